@@ -0,0 +1,130 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2021 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jboss.jandex.benchmark;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import java.util.ArrayList;
+import java.util.List;
+
+import net.bytebuddy.ByteBuddy;
+import net.bytebuddy.description.annotation.AnnotationDescription;
+import net.bytebuddy.description.modifier.Visibility;
+import net.bytebuddy.description.type.TypeDescription;
+import net.bytebuddy.dynamic.DynamicType;
+import net.bytebuddy.implementation.StubMethod;
+import org.jboss.jandex.DotName;
+
+/**
+ * A deterministic, generated set of class files used as benchmark input. The corpus consists of a
+ * number of interface trees and class hierarchies implementing them, with runtime visible annotations
+ * on types, fields, methods and parameters so that every part of the indexer is exercised.
+ */
+final class Corpus {
+
+    static final String PACKAGE = "org.jboss.jandex.benchmark.generated";
+
+    static final DotName MARKER = DotName.createSimple(Marker.class.getName());
+    static final DotName TAG = DotName.createSimple(Tag.class.getName());
+    static final DotName ROOT_INTERFACE = DotName.createSimple(PACKAGE + ".Interface0_0");
+    static final DotName ROOT_CLASS = DotName.createSimple(PACKAGE + ".Class0_0");
+
+    @Retention(RetentionPolicy.RUNTIME)
+    @Target({ElementType.TYPE, ElementType.FIELD, ElementType.METHOD, ElementType.PARAMETER})
+    @interface Marker {
+        int value();
+    }
+
+    @Retention(RetentionPolicy.RUNTIME)
+    @Target({ElementType.TYPE, ElementType.METHOD})
+    @interface Tag {
+        String value();
+    }
+
+    private static final int INTERFACES_PER_TREE = 8;
+    private static final int MEMBERS_PER_CLASS = 6;
+
+    private final List<byte[]> classes;
+
+    private Corpus(List<byte[]> classes) {
+        this.classes = classes;
+    }
+
+    /**
+     * Generates a corpus with the given number of hierarchies, each with one interface tree and
+     * {@code classesPerHierarchy} classes forming a chain of subclasses.
+     */
+    static Corpus generate(int hierarchies, int classesPerHierarchy) {
+        ByteBuddy byteBuddy = new ByteBuddy();
+        List<byte[]> classes = new ArrayList<byte[]>();
+
+        for (int h = 0; h < hierarchies; h++) {
+            List<TypeDescription> interfaces = new ArrayList<TypeDescription>();
+            for (int i = 0; i < INTERFACES_PER_TREE; i++) {
+                DynamicType.Builder<?> builder = i == 0
+                        ? byteBuddy.makeInterface()
+                        : byteBuddy.makeInterface(interfaces.get((i - 1) / 2));
+                DynamicType.Unloaded<?> type = builder
+                        .name(PACKAGE + ".Interface" + h + "_" + i)
+                        .annotateType(marker(i))
+                        .make();
+                interfaces.add(type.getTypeDescription());
+                classes.add(type.getBytes());
+            }
+
+            TypeDescription superClass = TypeDescription.OBJECT;
+            for (int c = 0; c < classesPerHierarchy; c++) {
+                DynamicType.Builder<?> builder = byteBuddy.subclass(superClass)
+                        .name(PACKAGE + ".Class" + h + "_" + c)
+                        .implement(interfaces.get(c % INTERFACES_PER_TREE))
+                        .annotateType(marker(c), tag("class" + c));
+                for (int m = 0; m < MEMBERS_PER_CLASS; m++) {
+                    builder = builder.defineField("field" + m, m % 2 == 0 ? String.class : List.class, Visibility.PRIVATE)
+                            .annotateField(marker(m))
+                            .defineMethod("method" + m, void.class, Visibility.PUBLIC)
+                            .withParameter(String.class, "arg").annotateParameter(marker(m))
+                            .intercept(StubMethod.INSTANCE)
+                            .annotateMethod(tag("method" + m));
+                }
+                DynamicType.Unloaded<?> type = builder.make();
+                superClass = type.getTypeDescription();
+                classes.add(type.getBytes());
+            }
+        }
+        return new Corpus(classes);
+    }
+
+    private static AnnotationDescription marker(int value) {
+        return AnnotationDescription.Builder.ofType(Marker.class).define("value", value).build();
+    }
+
+    private static AnnotationDescription tag(String value) {
+        return AnnotationDescription.Builder.ofType(Tag.class).define("value", value).build();
+    }
+
+    List<byte[]> classes() {
+        return classes;
+    }
+
+    int size() {
+        return classes.size();
+    }
+}
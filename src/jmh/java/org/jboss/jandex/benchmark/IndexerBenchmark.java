@@ -0,0 +1,89 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2021 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jboss.jandex.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.jboss.jandex.Index;
+import org.jboss.jandex.Indexer;
+import org.jboss.jandex.IndexerOptions;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the throughput of {@link Indexer#index(java.io.InputStream)} and {@link Indexer#index(byte[])}
+ * over a generated corpus, including the final {@link Indexer#complete()}, both with the complete
+ * and the {@linkplain IndexerOptions#annotationsOnly() annotation-only} indexer options.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class IndexerBenchmark {
+
+    @Param({"10", "100"})
+    public int hierarchies;
+
+    private Corpus corpus;
+
+    @Setup
+    public void setup() {
+        corpus = Corpus.generate(hierarchies, 20);
+    }
+
+    @Benchmark
+    public Index index() throws IOException {
+        Indexer indexer = new Indexer();
+        for (byte[] clazz : corpus.classes()) {
+            indexer.index(new ByteArrayInputStream(clazz));
+        }
+        return indexer.complete();
+    }
+
+    @Benchmark
+    public Index indexArray() throws IOException {
+        Indexer indexer = new Indexer();
+        for (byte[] clazz : corpus.classes()) {
+            indexer.index(clazz);
+        }
+        return indexer.complete();
+    }
+
+    @Benchmark
+    public Index indexAnnotationsOnly() throws IOException {
+        Indexer indexer = new Indexer(IndexerOptions.annotationsOnly());
+        for (byte[] clazz : corpus.classes()) {
+            indexer.index(clazz);
+        }
+        return indexer.complete();
+    }
+}
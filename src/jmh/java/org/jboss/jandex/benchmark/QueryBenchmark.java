@@ -0,0 +1,121 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2021 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jboss.jandex.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.jboss.jandex.AnnotationInstance;
+import org.jboss.jandex.ClassInfo;
+import org.jboss.jandex.CompositeIndex;
+import org.jboss.jandex.DotName;
+import org.jboss.jandex.Index;
+import org.jboss.jandex.IndexView;
+import org.jboss.jandex.Indexer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the common {@link IndexView} queries against a single {@link org.jboss.jandex.Index} and
+ * against a {@link CompositeIndex} built from the same classes split over several indexes. The
+ * {@code closure} variant uses an index with a precomputed hierarchy closure, and the {@code cached}
+ * variant a caching composite index.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class QueryBenchmark {
+
+    private static final int PARTS = 8;
+
+    @Param({"index", "closure", "composite", "cached"})
+    public String view;
+
+    private IndexView index;
+    private DotName lastClass;
+
+    @Setup
+    public void setup() throws IOException {
+        Corpus corpus = Corpus.generate(50, 20);
+        int parts = "composite".equals(view) || "cached".equals(view) ? PARTS : 1;
+        List<Indexer> indexers = new ArrayList<Indexer>();
+        for (int i = 0; i < parts; i++) {
+            indexers.add(new Indexer());
+        }
+        int i = 0;
+        for (byte[] clazz : corpus.classes()) {
+            ClassInfo info = indexers.get(i++ % parts).index(new ByteArrayInputStream(clazz));
+            lastClass = info.name();
+        }
+        List<IndexView> indexes = new ArrayList<IndexView>();
+        for (Indexer indexer : indexers) {
+            indexes.add(indexer.complete());
+        }
+        if ("cached".equals(view)) {
+            index = CompositeIndex.createCached(1024, indexes);
+        } else if (parts > 1) {
+            index = CompositeIndex.create(indexes);
+        } else if ("closure".equals(view)) {
+            index = ((Index) indexes.get(0)).withHierarchyClosure();
+        } else {
+            index = indexes.get(0);
+        }
+    }
+
+    @Benchmark
+    public Collection<ClassInfo> getAllKnownImplementors() {
+        return index.getAllKnownImplementors(Corpus.ROOT_INTERFACE);
+    }
+
+    @Benchmark
+    public Collection<ClassInfo> getAllKnownSubclasses() {
+        return index.getAllKnownSubclasses(Corpus.ROOT_CLASS);
+    }
+
+    @Benchmark
+    public Collection<AnnotationInstance> getAnnotations() {
+        return index.getAnnotations(Corpus.TAG);
+    }
+
+    @Benchmark
+    public ClassInfo getClassByName() {
+        return index.getClassByName(lastClass);
+    }
+
+    @Benchmark
+    public Collection<ClassInfo> getKnownClasses() {
+        return index.getKnownClasses();
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2021 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.jandex;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * Matches the field descriptors of a fixed set of annotation types, such as
+ * {@code Ljavax/ws/rs/Path;}, against modified UTF-8 encoded constant pool entries, without
+ * decoding them. The descriptors are grouped by their encoded length, so an entry is only
+ * compared to the descriptors of the same length.
+ */
+final class AnnotationNameFilter {
+    private static final byte[][] NONE = new byte[0][];
+
+    private final byte[][][] descriptorsByLength;
+
+    AnnotationNameFilter(Collection<DotName> annotationNames) {
+        byte[][] descriptors = new byte[annotationNames.size()][];
+        int maxLength = 0;
+        int i = 0;
+        for (DotName name : annotationNames) {
+            descriptors[i] = encode('L' + name.toString().replace('.', '/') + ';');
+            maxLength = Math.max(maxLength, descriptors[i].length);
+            i++;
+        }
+
+        byte[][][] byLength = new byte[maxLength + 1][][];
+        Arrays.fill(byLength, NONE);
+        for (byte[] descriptor : descriptors) {
+            byte[][] group = byLength[descriptor.length];
+            group = Arrays.copyOf(group, group.length + 1);
+            group[group.length - 1] = descriptor;
+            byLength[descriptor.length] = group;
+        }
+        this.descriptorsByLength = byLength;
+    }
+
+    /**
+     * Returns whether the passed range holds the descriptor of one of the annotation types.
+     */
+    boolean matches(byte[] buf, int offset, int len) {
+        if (len >= descriptorsByLength.length) {
+            return false;
+        }
+
+        for (byte[] descriptor : descriptorsByLength[len]) {
+            if (equals(descriptor, buf, offset)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean equals(byte[] descriptor, byte[] buf, int offset) {
+        // descriptors of related annotations usually share the package, so compare from the end
+        for (int i = descriptor.length - 1; i >= 0; i--) {
+            if (descriptor[i] != buf[offset + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static byte[] encode(String descriptor) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(descriptor.length() + 2);
+            new DataOutputStream(bytes).writeUTF(descriptor);
+            // drop the length written ahead of the modified UTF-8 data
+            return Arrays.copyOfRange(bytes.toByteArray(), 2, bytes.size());
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Invalid annotation name: " + descriptor, e);
+        }
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2021 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jboss.jandex;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The instances of an annotation keyed by the string, enum and class values of their members. A member
+ * holding an array of such values is keyed by each of its elements. Only explicitly specified values
+ * are indexed, since the index does not know the default values of annotation members.
+ *
+ * <p><b>Thread-Safety</b></p>
+ * This class is immutable and can be shared between threads safely.
+ *
+ */
+final class AnnotationValueIndex {
+    private static final List<AnnotationInstance> EMPTY_LIST = Collections.emptyList();
+
+    private final Map<AnnotationValue, List<AnnotationInstance>> instances;
+
+    AnnotationValueIndex(Collection<AnnotationInstance> annotations) {
+        Map<AnnotationValue, List<AnnotationInstance>> instances = new HashMap<AnnotationValue, List<AnnotationInstance>>();
+        for (AnnotationInstance annotation : annotations) {
+            for (AnnotationValue value : annotation.valueArray()) {
+                if (value instanceof AnnotationValue.ArrayValue) {
+                    for (AnnotationValue element : value.asArray()) {
+                        AnnotationValue key = renamed(element, value.name());
+                        if (key != null) {
+                            add(instances, key, annotation);
+                        }
+                    }
+                } else if (isIndexed(value)) {
+                    add(instances, value, annotation);
+                }
+            }
+        }
+
+        for (Map.Entry<AnnotationValue, List<AnnotationInstance>> entry : instances.entrySet()) {
+            entry.setValue(Collections.unmodifiableList(entry.getValue()));
+        }
+        this.instances = instances;
+    }
+
+    /**
+     * Returns the instances which specify the given value for the member the value is named after.
+     *
+     * @param value the member name and value to look for
+     * @return an unmodifiable list of the instances, empty if there are none
+     */
+    List<AnnotationInstance> get(AnnotationValue value) {
+        List<AnnotationInstance> list = instances.get(value);
+        return list == null ? EMPTY_LIST : list;
+    }
+
+    /**
+     * Verifies that a value can be looked up.
+     *
+     * @throws IllegalArgumentException if the value is null, or not a string, enum or class value
+     */
+    static void checkIndexed(AnnotationValue value) {
+        if (value == null) {
+            throw new IllegalArgumentException("value cannot be null");
+        }
+        if (!isIndexed(value)) {
+            throw new IllegalArgumentException("Only string, enum and class values can be looked up: " + value);
+        }
+    }
+
+    private static boolean isIndexed(AnnotationValue value) {
+        return value instanceof AnnotationValue.StringValue || value instanceof AnnotationValue.EnumValue
+                || value instanceof AnnotationValue.ClassValue;
+    }
+
+    private static AnnotationValue renamed(AnnotationValue element, String name) {
+        if (element instanceof AnnotationValue.StringValue) {
+            return new AnnotationValue.StringValue(name, element.asString());
+        }
+        if (element instanceof AnnotationValue.EnumValue) {
+            return new AnnotationValue.EnumValue(name, element.asEnumType(), element.asEnum());
+        }
+        if (element instanceof AnnotationValue.ClassValue) {
+            return new AnnotationValue.ClassValue(name, element.asClass());
+        }
+        return null;
+    }
+
+    private static void add(Map<AnnotationValue, List<AnnotationInstance>> instances, AnnotationValue key,
+                            AnnotationInstance annotation) {
+        List<AnnotationInstance> list = instances.get(key);
+        if (list == null) {
+            list = new ArrayList<AnnotationInstance>(1);
+            instances.put(key, list);
+        }
+        // an array may hold the same value more than once
+        if (list.isEmpty() || list.get(list.size() - 1) != annotation) {
+            list.add(annotation);
+        }
+    }
+}
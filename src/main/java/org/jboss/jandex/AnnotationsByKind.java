@@ -0,0 +1,78 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2021 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jboss.jandex;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The instances of an annotation split into one list per {@link AnnotationTarget.Kind} of their target.
+ * Instances keep their relative order within each list.
+ *
+ * <p><b>Thread-Safety</b></p>
+ * This class is immutable and can be shared between threads safely.
+ *
+ */
+final class AnnotationsByKind {
+    private static final AnnotationTarget.Kind[] KINDS = AnnotationTarget.Kind.values();
+    private static final List<AnnotationInstance> EMPTY_LIST = Collections.emptyList();
+
+    private final List<AnnotationInstance>[] lists;
+
+    @SuppressWarnings("unchecked")
+    AnnotationsByKind(Collection<AnnotationInstance> instances) {
+        int[] counts = new int[KINDS.length];
+        for (AnnotationInstance instance : instances) {
+            AnnotationTarget target = instance.target();
+            if (target != null) {
+                counts[target.kind().ordinal()]++;
+            }
+        }
+
+        AnnotationInstance[][] arrays = new AnnotationInstance[KINDS.length][];
+        for (int i = 0; i < KINDS.length; i++) {
+            arrays[i] = counts[i] == 0 ? AnnotationInstance.EMPTY_ARRAY : new AnnotationInstance[counts[i]];
+            counts[i] = 0;
+        }
+        for (AnnotationInstance instance : instances) {
+            AnnotationTarget target = instance.target();
+            if (target != null) {
+                int kind = target.kind().ordinal();
+                arrays[kind][counts[kind]++] = instance;
+            }
+        }
+
+        lists = new List[KINDS.length];
+        for (int i = 0; i < KINDS.length; i++) {
+            lists[i] = arrays[i].length == 0 ? EMPTY_LIST : Collections.unmodifiableList(Arrays.asList(arrays[i]));
+        }
+    }
+
+    /**
+     * Returns the instances whose target is of the given kind.
+     *
+     * @param kind the kind of target
+     * @return an unmodifiable list of the instances, empty if there are none
+     */
+    List<AnnotationInstance> get(AnnotationTarget.Kind kind) {
+        return lists[kind.ordinal()];
+    }
+}
@@ -0,0 +1,186 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2021 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jboss.jandex;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A composite index that memoizes query results in a bounded, least recently used cache, and
+ * answers class lookups from a single table merged from all of its indexes.
+ *
+ * <p><b>Thread-Safety</b></p>
+ * This class is thread-safe. Results are computed outside of the cache lock, so two threads issuing
+ * the same query at the same time may both compute it, and one of the results is kept.
+ *
+ * @see CompositeIndex#createCached(int, Collection)
+ */
+final class CachingCompositeIndex extends CompositeIndex {
+    private static final int ANNOTATIONS = 0;
+    private static final int DIRECT_SUBCLASSES = 1;
+    private static final int ALL_SUBCLASSES = 2;
+    private static final int DIRECT_IMPLEMENTORS = 3;
+    private static final int ALL_IMPLEMENTORS = 4;
+    private static final int USERS = 5;
+
+    private final Map<DotName, ClassInfo> classes;
+    private final Map<Query, Collection<?>> cache;
+
+    CachingCompositeIndex(Collection<IndexView> indexes, final int maxCachedQueries) {
+        super(indexes);
+        if (maxCachedQueries < 0) {
+            throw new IllegalArgumentException("maxCachedQueries cannot be negative");
+        }
+
+        Map<DotName, ClassInfo> classes = new HashMap<DotName, ClassInfo>();
+        for (IndexView index : indexes) {
+            for (ClassInfo clazz : index.getKnownClasses()) {
+                if (!classes.containsKey(clazz.name())) {
+                    classes.put(clazz.name(), clazz);
+                }
+            }
+        }
+        this.classes = classes;
+        this.cache = new LinkedHashMap<Query, Collection<?>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Query, Collection<?>> eldest) {
+                return size() > maxCachedQueries;
+            }
+        };
+    }
+
+    private Collection<?> cached(Query query) {
+        synchronized (cache) {
+            return cache.get(query);
+        }
+    }
+
+    private <T extends Collection<?>> T cache(Query query, T result) {
+        synchronized (cache) {
+            cache.put(query, result);
+        }
+        return result;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public List<AnnotationInstance> getAnnotations(DotName annotationName) {
+        Query query = new Query(ANNOTATIONS, annotationName);
+        List<AnnotationInstance> result = (List<AnnotationInstance>) cached(query);
+        return result != null ? result : cache(query, super.getAnnotations(annotationName));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public Set<ClassInfo> getKnownDirectSubclasses(DotName className) {
+        Query query = new Query(DIRECT_SUBCLASSES, className);
+        Set<ClassInfo> result = (Set<ClassInfo>) cached(query);
+        return result != null ? result : cache(query, super.getKnownDirectSubclasses(className));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public Set<ClassInfo> getAllKnownSubclasses(DotName className) {
+        Query query = new Query(ALL_SUBCLASSES, className);
+        Set<ClassInfo> result = (Set<ClassInfo>) cached(query);
+        return result != null ? result : cache(query, Collections.unmodifiableSet(super.getAllKnownSubclasses(className)));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public Collection<ClassInfo> getKnownDirectImplementors(DotName className) {
+        Query query = new Query(DIRECT_IMPLEMENTORS, className);
+        Collection<ClassInfo> result = (Collection<ClassInfo>) cached(query);
+        return result != null ? result : cache(query, super.getKnownDirectImplementors(className));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public Set<ClassInfo> getAllKnownImplementors(DotName interfaceName) {
+        Query query = new Query(ALL_IMPLEMENTORS, interfaceName);
+        Set<ClassInfo> result = (Set<ClassInfo>) cached(query);
+        return result != null ? result : cache(query, Collections.unmodifiableSet(super.getAllKnownImplementors(interfaceName)));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public Collection<ClassInfo> getKnownUsers(DotName className) {
+        Query query = new Query(USERS, className);
+        Collection<ClassInfo> result = (Collection<ClassInfo>) cached(query);
+        return result != null ? result : cache(query, super.getKnownUsers(className));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ClassInfo getClassByName(DotName className) {
+        return classes.get(className);
+    }
+
+    private static final class Query {
+        private final int kind;
+        private final DotName name;
+
+        Query(int kind, DotName name) {
+            this.kind = kind;
+            this.name = name;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Query)) {
+                return false;
+            }
+            Query query = (Query) o;
+            return kind == query.kind && name.equals(query.name);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * kind + name.hashCode();
+        }
+    }
+}
@@ -56,6 +56,7 @@ public final class ClassInfo implements AnnotationTarget {
 
     private final DotName name;
     private Map<DotName, List<AnnotationInstance>> annotations;
+    private List<AnnotationInstance> classAnnotations;
 
     // Not final to allow lazy initialization, immutable once published
     private short flags;
@@ -321,6 +322,30 @@ public final class ClassInfo implements AnnotationTarget {
 
     final void setAnnotations(Map<DotName, List<AnnotationInstance>> annotations) {
         this.annotations = annotations;
+
+        // the annotations declared on the class itself are kept apart, as they are requested frequently
+        int count = 0;
+        for (List<AnnotationInstance> instances : annotations.values()) {
+            for (AnnotationInstance instance : instances) {
+                if (instance.target() != null && instance.target().kind() == Kind.CLASS) {
+                    count++;
+                }
+            }
+        }
+        if (count == 0) {
+            this.classAnnotations = Collections.emptyList();
+            return;
+        }
+        AnnotationInstance[] classAnnotations = new AnnotationInstance[count];
+        count = 0;
+        for (List<AnnotationInstance> instances : annotations.values()) {
+            for (AnnotationInstance instance : instances) {
+                if (instance.target() != null && instance.target().kind() == Kind.CLASS) {
+                    classAnnotations[count++] = instance;
+                }
+            }
+        }
+        this.classAnnotations = Collections.unmodifiableList(Arrays.asList(classAnnotations));
     }
 
     /**
@@ -329,7 +354,7 @@ public final class ClassInfo implements AnnotationTarget {
      * @return the list of annotations declared on this class
      */
     public final Collection<AnnotationInstance> classAnnotations() {
-        return new AnnotationTargetFilterCollection<ClassInfo>(annotations, ClassInfo.class);
+        return classAnnotations;
     }
 
     /**
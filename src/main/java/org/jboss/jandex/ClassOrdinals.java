@@ -0,0 +1,250 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2021 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jboss.jandex;
+
+import java.lang.reflect.Modifier;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Assigns the dense ordinals {@code 0} to {@code n - 1} to the {@code n} classes of an index, which
+ * are the bit positions used by {@link ClassSet}. Sets of known subclasses and implementors are built
+ * by walking the hierarchy over ordinals, which marks the bits of the result directly.
+ *
+ * <p><b>Thread-Safety</b></p>
+ * This class is immutable apart from the hierarchy tables, which are built on first use, and can be
+ * shared between threads safely.
+ *
+ */
+final class ClassOrdinals {
+    private final ClassInfo[] classes;
+    private final Map<DotName, Integer> ordinals;
+    private final Map<DotName, List<ClassInfo>> subclassMap;
+    private final Map<DotName, List<ClassInfo>> implementorMap;
+
+    // ordinals of the direct subclasses and implementors of each class, or null if there are none
+    private volatile int[][] subclasses;
+    private volatile int[][] implementors;
+
+    ClassOrdinals(Collection<ClassInfo> classes, Map<DotName, List<ClassInfo>> subclasses,
+                  Map<DotName, List<ClassInfo>> implementors) {
+        this.classes = classes.toArray(new ClassInfo[classes.size()]);
+        this.ordinals = new HashMap<DotName, Integer>(this.classes.length * 4 / 3 + 1);
+        for (int i = 0; i < this.classes.length; i++) {
+            ordinals.put(this.classes[i].name(), Integer.valueOf(i));
+        }
+        this.subclassMap = subclasses;
+        this.implementorMap = implementors;
+    }
+
+    int size() {
+        return classes.length;
+    }
+
+    ClassInfo get(int ordinal) {
+        return classes[ordinal];
+    }
+
+    int ordinal(DotName name) {
+        Integer ordinal = ordinals.get(name);
+        return ordinal == null ? -1 : ordinal.intValue();
+    }
+
+    int ordinal(ClassInfo clazz) {
+        int ordinal = ordinal(clazz.name());
+        return ordinal >= 0 && classes[ordinal] == clazz ? ordinal : -1;
+    }
+
+    ClassSet empty() {
+        return new ClassSet(this, new long[ClassSet.words(classes.length)]);
+    }
+
+    ClassSet all() {
+        return ranges(new int[] {0, classes.length});
+    }
+
+    /**
+     * Returns the set of the ordinals in the passed start and end pairs.
+     */
+    ClassSet ranges(int[] bounds) {
+        long[] words = new long[ClassSet.words(classes.length)];
+        for (int i = 0; i < bounds.length; i += 2) {
+            int from = bounds[i];
+            int to = bounds[i + 1];
+            if (from >= to) {
+                continue;
+            }
+            int first = from >>> 6;
+            int last = (to - 1) >>> 6;
+            long firstMask = -1L << from;
+            long lastMask = -1L >>> -to;
+            if (first == last) {
+                words[first] |= firstMask & lastMask;
+            } else {
+                words[first] |= firstMask;
+                Arrays.fill(words, first + 1, last, -1L);
+                words[last] |= lastMask;
+            }
+        }
+        return new ClassSet(this, words);
+    }
+
+    ClassSet allKnownSubclasses(DotName className) {
+        Walk classes = new Walk(this.classes.length);
+        int root = ordinal(className);
+        if (root >= 0) {
+            // a malformed hierarchy may lead back to the class itself, which is not its own subclass
+            classes.mark(root);
+            classes.next();
+        }
+        List<ClassInfo> direct = subclassMap.get(className);
+        if (direct != null) {
+            for (ClassInfo clazz : direct) {
+                classes.mark(ordinal(clazz));
+            }
+        }
+        markSubclasses(classes);
+        if (root >= 0) {
+            classes.words[root >>> 6] &= ~(1L << root);
+        }
+        return new ClassSet(this, classes.words);
+    }
+
+    ClassSet allKnownImplementors(DotName interfaceName) {
+        Walk classes = new Walk(this.classes.length);
+        List<ClassInfo> direct = implementorMap.get(interfaceName);
+        if (direct == null) {
+            return new ClassSet(this, classes.words);
+        }
+
+        Walk interfaces = new Walk(this.classes.length);
+        int root = ordinal(interfaceName);
+        if (root >= 0) {
+            interfaces.mark(root);
+            interfaces.next();
+        }
+        for (ClassInfo clazz : direct) {
+            if (Modifier.isInterface(clazz.flags())) {
+                interfaces.mark(ordinal(clazz));
+            } else {
+                classes.mark(ordinal(clazz));
+            }
+        }
+        int[][] implementors = implementors();
+        while (interfaces.hasNext()) {
+            int[] list = implementors[interfaces.next()];
+            if (list == null) {
+                continue;
+            }
+            for (int ordinal : list) {
+                if (ordinal >= 0 && Modifier.isInterface(this.classes[ordinal].flags())) {
+                    interfaces.mark(ordinal);
+                } else {
+                    classes.mark(ordinal);
+                }
+            }
+        }
+        markSubclasses(classes);
+        return new ClassSet(this, classes.words);
+    }
+
+    private void markSubclasses(Walk classes) {
+        int[][] subclasses = subclasses();
+        while (classes.hasNext()) {
+            int[] list = subclasses[classes.next()];
+            if (list != null) {
+                for (int ordinal : list) {
+                    classes.mark(ordinal);
+                }
+            }
+        }
+    }
+
+    private int[][] subclasses() {
+        int[][] subclasses = this.subclasses;
+        if (subclasses == null) {
+            // racy but idempotent
+            this.subclasses = subclasses = children(subclassMap);
+        }
+        return subclasses;
+    }
+
+    private int[][] implementors() {
+        int[][] implementors = this.implementors;
+        if (implementors == null) {
+            // racy but idempotent
+            this.implementors = implementors = children(implementorMap);
+        }
+        return implementors;
+    }
+
+    private int[][] children(Map<DotName, List<ClassInfo>> map) {
+        int[][] children = new int[classes.length][];
+        for (Map.Entry<DotName, List<ClassInfo>> entry : map.entrySet()) {
+            int parent = ordinal(entry.getKey());
+            if (parent < 0) {
+                continue;
+            }
+            List<ClassInfo> list = entry.getValue();
+            int[] ordinals = new int[list.size()];
+            for (int i = 0; i < ordinals.length; i++) {
+                ordinals[i] = ordinal(list.get(i));
+            }
+            children[parent] = ordinals;
+        }
+        return children;
+    }
+
+    /**
+     * A breadth first walk over ordinals, which uses the bits of its result to skip visited classes.
+     */
+    private static final class Walk {
+        private final long[] words;
+        private int[] queue = new int[16];
+        private int head;
+        private int tail;
+
+        Walk(int size) {
+            this.words = new long[ClassSet.words(size)];
+        }
+
+        // sets the bit of the passed ordinal, and queues the ordinal if the bit was clear
+        void mark(int ordinal) {
+            if (ordinal < 0 || (words[ordinal >>> 6] & 1L << ordinal) != 0) {
+                return;
+            }
+            words[ordinal >>> 6] |= 1L << ordinal;
+            if (tail == queue.length) {
+                queue = Arrays.copyOf(queue, tail * 2);
+            }
+            queue[tail++] = ordinal;
+        }
+
+        boolean hasNext() {
+            return head < tail;
+        }
+
+        int next() {
+            return queue[head++];
+        }
+    }
+}
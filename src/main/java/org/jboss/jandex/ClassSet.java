@@ -0,0 +1,192 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2021 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jboss.jandex;
+
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * An immutable set of classes of a single {@link Index}, stored as a bit set over the class ordinals
+ * of that index. Sets of the same index are combined with {@link #and(ClassSet)}, {@link #or(ClassSet)}
+ * and {@link #andNot(ClassSet)}, which operate on 64 classes per step instead of hashing each class.
+ * For example, the concrete implementors of an interface which carry an annotation are:
+ *
+ * <pre class="brush:java; gutter: false;">
+ * index.getAllKnownImplementorSet(service)
+ *      .and(index.getAnnotatedClassSet(annotation))
+ *      .andNot(index.getClassSetWithModifiers(Modifier.ABSTRACT));
+ * </pre>
+ *
+ * <p>The set is iterated in ordinal order. It cannot be modified through the {@link java.util.Set}
+ * interface.</p>
+ *
+ * <p><b>Thread-Safety</b></p>
+ * This class is immutable and can be shared between threads safely.
+ *
+ * @since 2.4.3
+ */
+public final class ClassSet extends AbstractSet<ClassInfo> {
+    private final ClassOrdinals ordinals;
+    private final long[] words;
+    private int size = -1;
+
+    ClassSet(ClassOrdinals ordinals, long[] words) {
+        this.ordinals = ordinals;
+        this.words = words;
+    }
+
+    static int words(int bits) {
+        return (bits + 63) >>> 6;
+    }
+
+    // only used while a new set is populated, before it is published
+    void set(int ordinal) {
+        if (ordinal >= 0) {
+            words[ordinal >>> 6] |= 1L << ordinal;
+        }
+    }
+
+    /**
+     * Returns the classes contained in both this set and the passed set.
+     *
+     * @param other a set obtained from the same index
+     * @return the intersection of both sets
+     * @throws IllegalArgumentException if the passed set belongs to a different index
+     */
+    public ClassSet and(ClassSet other) {
+        check(other);
+        long[] result = new long[words.length];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = words[i] & other.words[i];
+        }
+        return new ClassSet(ordinals, result);
+    }
+
+    /**
+     * Returns the classes contained in this set, the passed set, or both.
+     *
+     * @param other a set obtained from the same index
+     * @return the union of both sets
+     * @throws IllegalArgumentException if the passed set belongs to a different index
+     */
+    public ClassSet or(ClassSet other) {
+        check(other);
+        long[] result = new long[words.length];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = words[i] | other.words[i];
+        }
+        return new ClassSet(ordinals, result);
+    }
+
+    /**
+     * Returns the classes contained in this set but not in the passed set.
+     *
+     * @param other a set obtained from the same index
+     * @return the difference of both sets
+     * @throws IllegalArgumentException if the passed set belongs to a different index
+     */
+    public ClassSet andNot(ClassSet other) {
+        check(other);
+        long[] result = new long[words.length];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = words[i] & ~other.words[i];
+        }
+        return new ClassSet(ordinals, result);
+    }
+
+    /**
+     * Returns whether the class with the given ordinal is contained in this set.
+     *
+     * @param ordinal the ordinal of a class, as returned by {@link Index#getClassOrdinal(DotName)}
+     * @return true if the class is a member of this set
+     */
+    public boolean containsOrdinal(int ordinal) {
+        return ordinal >= 0 && ordinal < ordinals.size() && (words[ordinal >>> 6] & (1L << ordinal)) != 0;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return o instanceof ClassInfo && containsOrdinal(ordinals.ordinal((ClassInfo) o));
+    }
+
+    @Override
+    public int size() {
+        int size = this.size;
+        if (size < 0) {
+            // racy but idempotent
+            size = 0;
+            for (long word : words) {
+                size += Long.bitCount(word);
+            }
+            this.size = size;
+        }
+        return size;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        for (long word : words) {
+            if (word != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public Iterator<ClassInfo> iterator() {
+        return new Iterator<ClassInfo>() {
+            private int index;
+            private long word = words.length > 0 ? words[0] : 0;
+
+            public boolean hasNext() {
+                while (word == 0) {
+                    if (++index >= words.length) {
+                        return false;
+                    }
+                    word = words[index];
+                }
+                return true;
+            }
+
+            public ClassInfo next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                int bit = Long.numberOfTrailingZeros(word);
+                word &= word - 1;
+                return ordinals.get((index << 6) + bit);
+            }
+
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    private void check(ClassSet other) {
+        if (other == null) {
+            throw new IllegalArgumentException("other cannot be null");
+        }
+        if (other.ordinals != ordinals) {
+            throw new IllegalArgumentException("Sets of different indexes cannot be combined");
+        }
+    }
+}
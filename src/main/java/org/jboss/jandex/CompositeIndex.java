@@ -40,7 +40,10 @@ import java.util.Set;
 public class CompositeIndex implements IndexView {
     final Collection<IndexView> indexes;
 
-    private CompositeIndex(final Collection<IndexView> indexes) {
+    // meta-annotations across all indexes, built on first request
+    private volatile MetaAnnotationIndex metaAnnotations;
+
+    CompositeIndex(final Collection<IndexView> indexes) {
         this.indexes = indexes;
     }
 
@@ -52,6 +55,39 @@ public class CompositeIndex implements IndexView {
         return new CompositeIndex(Arrays.asList(indexes));
     }
 
+    /**
+     * Creates a composite index which memoizes the results of its queries, keeping at most
+     * {@code maxCachedQueries} of them and evicting the least recently used result first. The class
+     * names of all passed indexes are also merged into a single lookup table up front, so that
+     * {@link #getClassByName(DotName)} does not have to ask every index in turn. If several indexes
+     * contain the same class, the first of them wins, as with a regular composite index.
+     *
+     * <p>The passed indexes must not change after this call. Unlike a regular composite index, all
+     * collections returned by the cached queries are unmodifiable, since they are shared between
+     * callers.</p>
+     *
+     * @param maxCachedQueries the maximum number of query results to keep, may be 0 to only merge class names
+     * @param indexes the indexes to aggregate
+     * @return the caching composite index
+     * @throws IllegalArgumentException if {@code maxCachedQueries} is negative
+     */
+    public static CompositeIndex createCached(int maxCachedQueries, Collection<IndexView> indexes) {
+        return new CachingCompositeIndex(indexes, maxCachedQueries);
+    }
+
+    /**
+     * Creates a composite index which memoizes the results of its queries.
+     *
+     * @param maxCachedQueries the maximum number of query results to keep, may be 0 to only merge class names
+     * @param indexes the indexes to aggregate
+     * @return the caching composite index
+     * @throws IllegalArgumentException if {@code maxCachedQueries} is negative
+     * @see #createCached(int, Collection)
+     */
+    public static CompositeIndex createCached(int maxCachedQueries, final IndexView... indexes) {
+        return new CachingCompositeIndex(Arrays.asList(indexes), maxCachedQueries);
+    }
+
     public static CompositeIndex createMerged(final CompositeIndex... indexes) {
         ArrayList<IndexView> list =  new ArrayList<IndexView>();
         for (CompositeIndex index : indexes) {
@@ -74,6 +110,28 @@ public class CompositeIndex implements IndexView {
         return Collections.unmodifiableList(allInstances);
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    public List<AnnotationInstance> getAnnotations(DotName annotationName, AnnotationTarget.Kind kind) {
+        List<AnnotationInstance> allInstances = new ArrayList<AnnotationInstance>();
+        for (IndexView index : indexes) {
+            allInstances.addAll(index.getAnnotations(annotationName, kind));
+        }
+        return Collections.unmodifiableList(allInstances);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public List<AnnotationInstance> getAnnotationsWithValue(DotName annotationName, AnnotationValue value) {
+        List<AnnotationInstance> allInstances = new ArrayList<AnnotationInstance>();
+        for (IndexView index : indexes) {
+            allInstances.addAll(index.getAnnotationsWithValue(annotationName, value));
+        }
+        return Collections.unmodifiableList(allInstances);
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -206,6 +264,43 @@ public class CompositeIndex implements IndexView {
         return null;
     }
 
+    /**
+     * {@inheritDoc}
+     *
+     * <p>Meta-annotations are resolved across all indexes, so an annotation type declared in one index
+     * is followed when it annotates an annotation type of another.</p>
+     */
+    public Set<DotName> getMetaAnnotations(DotName annotationName) {
+        return metaAnnotations().getMetaAnnotations(annotationName);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public List<AnnotationInstance> getAnnotationsWithMetaAnnotation(DotName metaAnnotationName) {
+        return metaAnnotations().getAnnotationsWithMetaAnnotation(metaAnnotationName, this);
+    }
+
+    private MetaAnnotationIndex metaAnnotations() {
+        MetaAnnotationIndex metaAnnotations = this.metaAnnotations;
+        if (metaAnnotations == null) {
+            // concurrent first calls may each build the table, which yields equivalent tables
+            this.metaAnnotations = metaAnnotations = new MetaAnnotationIndex(getKnownClasses());
+        }
+        return metaAnnotations;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public Collection<ClassInfo> getClassesInPackage(DotName packageName, boolean recursive) {
+        final List<ClassInfo> allKnown = new ArrayList<ClassInfo>();
+        for (IndexView index : indexes) {
+            allKnown.addAll(index.getClassesInPackage(packageName, recursive));
+        }
+        return Collections.unmodifiableCollection(allKnown);
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -296,25 +296,105 @@ public final class DotName implements Comparable<DotName> {
      */
     @Override
     public int compareTo(DotName other) {
-        IndexState s1 = new IndexState();
-        IndexState s2 = new IndexState();
+        if (this == other) {
+            return 0;
+        }
+        if (!componentized && !other.componentized) {
+            return compareChars(local, 0, other.local, 0);
+        }
 
-        for (;;) {
-            int c1 = nextChar(s1, this);
-            int c2 = nextChar(s2, other);
+        // Walk both names one component at a time from the outermost one. A simple name is a single
+        // component. Components are located by their depth, which avoids collecting them in an array.
+        int depth1 = depth(this);
+        int depth2 = depth(other);
+        int k1 = 0;
+        int k2 = 0;
+        DotName n1 = ancestor(this, depth1 - 1);
+        DotName n2 = ancestor(other, depth2 - 1);
+        // position in the local name of the current component, -1 for the separator preceding it
+        int i1 = 0;
+        int i2 = 0;
 
-            if (c1 == -1) {
-                return c2 == -1 ? 0 : -1;
+        for (;;) {
+            // the outer components of interned names are frequently the same instance
+            if (n1 == n2 && i1 == i2 && n1 != null) {
+                k1++;
+                k2++;
+                n1 = k1 < depth1 ? ancestor(this, depth1 - 1 - k1) : null;
+                n2 = k2 < depth2 ? ancestor(other, depth2 - 1 - k2) : null;
+                i1 = i2 = -1;
+                continue;
             }
 
-            if (c2 == -1) {
+            if (n1 == null) {
+                return n2 == null ? 0 : -1;
+            }
+            if (n2 == null) {
                 return 1;
             }
 
+            if (i1 >= 0 && i2 >= 0) {
+                // compare the remainder of the shorter local name at once
+                String l1 = n1.local;
+                String l2 = n2.local;
+                int length = Math.min(l1.length() - i1, l2.length() - i2);
+                for (int j = 0; j < length; j++) {
+                    char c1 = l1.charAt(i1 + j);
+                    char c2 = l2.charAt(i2 + j);
+                    if (c1 != c2) {
+                        return c1 - c2;
+                    }
+                }
+                i1 += length;
+                i2 += length;
+            } else {
+                int c1 = i1 < 0 ? (n1.innerClass ? '$' : '.') : n1.local.charAt(i1);
+                int c2 = i2 < 0 ? (n2.innerClass ? '$' : '.') : n2.local.charAt(i2);
+                if (c1 != c2) {
+                    return c1 - c2;
+                }
+                i1++;
+                i2++;
+            }
+
+            if (i1 == n1.local.length()) {
+                n1 = ++k1 < depth1 ? ancestor(this, depth1 - 1 - k1) : null;
+                i1 = -1;
+            }
+            if (i2 == n2.local.length()) {
+                n2 = ++k2 < depth2 ? ancestor(other, depth2 - 1 - k2) : null;
+                i2 = -1;
+            }
+        }
+    }
+
+    private static int compareChars(String s1, int offset1, String s2, int offset2) {
+        int length1 = s1.length() - offset1;
+        int length2 = s2.length() - offset2;
+        int length = Math.min(length1, length2);
+        for (int i = 0; i < length; i++) {
+            char c1 = s1.charAt(offset1 + i);
+            char c2 = s2.charAt(offset2 + i);
             if (c1 != c2) {
                 return c1 - c2;
             }
         }
+        return length1 == length2 ? 0 : length1 < length2 ? -1 : 1;
+    }
+
+    private static int depth(DotName name) {
+        int depth = 1;
+        for (DotName prefix = name.prefix; prefix != null; prefix = prefix.prefix) {
+            depth++;
+        }
+        return depth;
+    }
+
+    private static DotName ancestor(DotName name, int distance) {
+        while (distance-- > 0) {
+            name = name.prefix;
+        }
+        return name;
     }
 
     /**
@@ -384,42 +464,4 @@ public final class DotName implements Comparable<DotName> {
         return cursor == -1;
     }
 
-    private static class IndexState {
-        DotName currentPrefix;
-        int offset;
-    }
-
-    private int nextChar(IndexState state, DotName name) {
-        if (state.offset == -1) {
-            return -1;
-        }
-
-        if (!name.componentized) {
-            if (state.offset > name.local.length() - 1) {
-                state.offset = -1;
-                return -1;
-            }
-            return name.local.charAt(state.offset++);
-        }
-
-        DotName p = name, n = name;
-        while (n.prefix != state.currentPrefix) {
-            p = n;
-            n = n.prefix;
-        }
-
-        if (state.offset > n.local.length() - 1) {
-            if (n == name) {
-                state.offset = -1;
-                return -1;
-            } else {
-                state.offset = 0;
-                state.currentPrefix = n;
-                return p.isInner() ? '$' : '.';
-            }
-        }
-
-        return n.local.charAt(state.offset++);
-    }
-
 }
@@ -27,6 +27,11 @@ import java.util.Map;
 /**
  * A simple recursive decent generic signature parser.
  *
+ * <p>Parsed signatures are cached, since the same signatures recur across many classes. A field or method
+ * signature which refers to a type parameter of its class is cached per class signature, since the type
+ * parameters of the class signature parsed last are the ones in scope. All other signatures are cached
+ * once, regardless of the class they occur in.</p>
+ *
  * @author Jason T. Greene
  */
 class GenericSignatureParser {
@@ -121,6 +126,17 @@ class GenericSignatureParser {
     private Map<String, TypeVariable> elementTypeParameters = new HashMap<String, TypeVariable>();
     private Map<String, TypeVariable> classTypeParameters = new HashMap<String, TypeVariable>();
 
+    private static final int MAX_CACHED_SIGNATURES = 8192;
+    private static final char CLASS_SIGNATURE = 'C';
+    private static final char FIELD_SIGNATURE = 'F';
+    private static final char METHOD_SIGNATURE = 'M';
+    private final Map<CacheKey, Object> cache = new HashMap<CacheKey, Object>();
+    private final CacheKey lookupKey = new CacheKey();
+    // the class signature whose type parameters are in scope, null if they are unknown
+    private String classSignature = "";
+    // whether the member signature parsed last looked up a type parameter of its class
+    private boolean classScopeUsed;
+
     GenericSignatureParser(NameTable names) {
         names.intern(DotName.OBJECT_NAME, '/');
         this.names = names;
@@ -241,9 +257,26 @@ class GenericSignatureParser {
     }
 
     ClassSignature parseClassSignature(String signature) {
+        this.classSignature = null;
+        this.classTypeParameters.clear();
+        ClassSignature cached = (ClassSignature) cache.get(lookupKey.set(CLASS_SIGNATURE, null, signature));
+        if (cached != null) {
+            for (Type parameter : cached.parameters()) {
+                classTypeParameters.put(parameter.asTypeVariable().identifier(), parameter.asTypeVariable());
+            }
+        } else {
+            cached = doParseClassSignature(signature);
+            cache(CLASS_SIGNATURE, null, signature, cached);
+        }
+        this.classSignature = signature;
+        return cached;
+    }
+
+    private ClassSignature doParseClassSignature(String signature) {
         this.signature = signature;
         this.typeParameters = this.classTypeParameters;
-        this.typeParameters.clear();
+        // type parameters of the previously parsed member are not in scope
+        this.elementTypeParameters.clear();
         this.pos = 0;
         Type[] parameters = parseTypeParameters();
         Type superClass = names.intern(parseClassTypeSignature());
@@ -264,6 +297,16 @@ class GenericSignatureParser {
      }
 
     Type parseFieldSignature(String signature) {
+        Type cached = (Type) lookup(FIELD_SIGNATURE, signature);
+        if (cached == null) {
+            cached = doParseFieldSignature(signature);
+            cacheMember(FIELD_SIGNATURE, signature, cached);
+        }
+        return cached;
+    }
+
+    private Type doParseFieldSignature(String signature) {
+        this.classScopeUsed = false;
         this.signature = signature;
         this.typeParameters = this.elementTypeParameters;
         this.typeParameters.clear();
@@ -274,6 +317,16 @@ class GenericSignatureParser {
 
 
     MethodSignature parseMethodSignature(String signature) {
+        MethodSignature cached = (MethodSignature) lookup(METHOD_SIGNATURE, signature);
+        if (cached == null) {
+            cached = doParseMethodSignature(signature);
+            cacheMember(METHOD_SIGNATURE, signature, cached);
+        }
+        return cached;
+    }
+
+    private MethodSignature doParseMethodSignature(String signature) {
+        this.classScopeUsed = false;
         this.signature = signature;
         this.typeParameters = this.elementTypeParameters;
         this.typeParameters.clear();
@@ -305,6 +358,29 @@ class GenericSignatureParser {
 
     }
 
+    private Object lookup(char kind, String signature) {
+        Object cached = cache.get(lookupKey.set(kind, null, signature));
+        if (cached == null && classSignature != null) {
+            cached = cache.get(lookupKey.set(kind, classSignature, signature));
+        }
+        return cached;
+    }
+
+    private void cacheMember(char kind, String signature, Object parsed) {
+        if (!classScopeUsed) {
+            cache(kind, null, signature, parsed);
+        } else if (classSignature != null) {
+            cache(kind, classSignature, signature, parsed);
+        }
+    }
+
+    private void cache(char kind, String context, String signature, Object parsed) {
+        if (cache.size() >= MAX_CACHED_SIGNATURES) {
+            cache.clear();
+        }
+        cache.put(new CacheKey().set(kind, context, signature), parsed);
+    }
+
     private Type parseClassTypeSignature() {
         String signature = this.signature;
         DotName name = parseName();
@@ -505,7 +581,11 @@ class GenericSignatureParser {
 
     private TypeVariable resolveType(String identifier) {
         TypeVariable ret = elementTypeParameters.get(identifier);
-        return ret == null ? classTypeParameters.get(identifier) : ret;
+        if (ret == null) {
+            classScopeUsed = true;
+            ret = classTypeParameters.get(identifier);
+        }
+        return ret;
     }
 
     private Type parseJavaType() {
@@ -560,6 +640,41 @@ class GenericSignatureParser {
         throw new IllegalStateException("Corrupted name");
     }
 
+    /**
+     * The kind of a signature, the class signature it is parsed in the scope of or null if the result does
+     * not depend on it, and the signature itself. A single instance is reused for lookups.
+     */
+    private static final class CacheKey {
+        private char kind;
+        private String context;
+        private String signature;
+        private int hash;
+
+        CacheKey set(char kind, String context, String signature) {
+            this.kind = kind;
+            this.context = context;
+            this.signature = signature;
+            this.hash = (31 * kind + (context == null ? 0 : context.hashCode())) * 31 + signature.hashCode();
+            return this;
+        }
+
+        public int hashCode() {
+            return hash;
+        }
+
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof CacheKey)) {
+                return false;
+            }
+            CacheKey other = (CacheKey) o;
+            return hash == other.hash && kind == other.kind && signature.equals(other.signature)
+                    && (context == null ? other.context == null : context.equals(other.context));
+        }
+    }
+
     public static void main(String[] args) throws IOException {
         GenericSignatureParser parser = new GenericSignatureParser(new NameTable());
         MethodSignature sig1 = parser.parseMethodSignature("<U:Ljava/lang/Foo;>(Ljava/lang/Class<TU;>;TU;)Ljava/lang/Class<+TU;>;");
@@ -0,0 +1,318 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2021 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jboss.jandex;
+
+import java.lang.reflect.Modifier;
+import java.util.AbstractSet;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * The transitive closure of the class hierarchy of an index. All classes are laid out in the
+ * pre-order of a depth first walk over the subclass tree, so that the subclasses of any class
+ * occupy a single contiguous range. Known subclasses are then a single range, and known implementors
+ * are the union of the ranges of the classes directly implementing an interface or one of its
+ * subinterfaces. The implementor ranges are computed on first use and then kept.
+ *
+ * <p><b>Thread-Safety</b></p>
+ * This class is immutable after construction, apart from the implementor cache which is concurrent.
+ * It can be freely shared between threads.
+ */
+final class HierarchyClosure {
+    private static final int[] NO_RANGES = new int[0];
+
+    private static final Comparator<int[]> RANGE_START = new Comparator<int[]>() {
+        public int compare(int[] r1, int[] r2) {
+            return r1[0] < r2[0] ? -1 : (r1[0] == r2[0] ? 0 : 1);
+        }
+    };
+
+    private final Map<DotName, List<ClassInfo>> subclasses;
+    private final Map<DotName, List<ClassInfo>> implementors;
+
+    // all classes, in depth first pre-order of the subclass tree
+    private final ClassInfo[] order;
+
+    // {position of the class itself or -1, start of its subclasses, end of its subclasses}
+    private final Map<DotName, int[]> intervals;
+
+    private final ConcurrentMap<DotName, ClassRangeSet> implementorSets = new ConcurrentHashMap<DotName, ClassRangeSet>();
+
+    HierarchyClosure(Map<DotName, List<ClassInfo>> subclasses, Map<DotName, List<ClassInfo>> implementors) {
+        this.subclasses = subclasses;
+        this.implementors = implementors;
+        this.intervals = new HashMap<DotName, int[]>();
+
+        Set<DotName> children = new HashSet<DotName>();
+        for (List<ClassInfo> list : subclasses.values()) {
+            for (ClassInfo clazz : list) {
+                children.add(clazz.name());
+            }
+        }
+
+        List<ClassInfo> order = new ArrayList<ClassInfo>();
+        for (DotName name : subclasses.keySet()) {
+            if (!children.contains(name)) {
+                walk(name, -1, order);
+            }
+        }
+        // Only reachable for malformed hierarchies containing cycles
+        for (DotName name : subclasses.keySet()) {
+            if (!intervals.containsKey(name)) {
+                walk(name, -1, order);
+            }
+        }
+        // Implementors that are not part of the subclass tree still need a position
+        for (List<ClassInfo> list : implementors.values()) {
+            for (ClassInfo clazz : list) {
+                if (!Modifier.isInterface(clazz.flags()) && !intervals.containsKey(clazz.name())) {
+                    order.add(clazz);
+                    walk(clazz.name(), order.size() - 1, order);
+                }
+            }
+        }
+        this.order = order.toArray(new ClassInfo[order.size()]);
+    }
+
+    private void walk(DotName root, int position, List<ClassInfo> order) {
+        ArrayDeque<Node> stack = new ArrayDeque<Node>();
+        stack.push(enter(root, position, order));
+        while (!stack.isEmpty()) {
+            Node node = stack.peek();
+            if (node.children.hasNext()) {
+                ClassInfo clazz = node.children.next();
+                if (!intervals.containsKey(clazz.name())) {
+                    order.add(clazz);
+                    stack.push(enter(clazz.name(), order.size() - 1, order));
+                }
+            } else {
+                node.interval[2] = order.size();
+                stack.pop();
+            }
+        }
+    }
+
+    private Node enter(DotName name, int position, List<ClassInfo> order) {
+        int[] interval = new int[] {position, order.size(), order.size()};
+        intervals.put(name, interval);
+        List<ClassInfo> list = subclasses.get(name);
+        return new Node(interval, list == null ? Collections.<ClassInfo>emptyList().iterator() : list.iterator());
+    }
+
+    Set<ClassInfo> getAllKnownSubclasses(DotName className) {
+        int[] interval = intervals.get(className);
+        if (interval == null || interval[1] == interval[2]) {
+            return Collections.emptySet();
+        }
+        return new ClassRangeSet(new int[] {interval[1], interval[2]});
+    }
+
+    Set<ClassInfo> getAllKnownImplementors(DotName interfaceName) {
+        return implementorSet(interfaceName);
+    }
+
+    /**
+     * Returns the start and end position of the known subclasses of the passed class.
+     */
+    int[] subclassBounds(DotName className) {
+        int[] interval = intervals.get(className);
+        if (interval == null || interval[1] == interval[2]) {
+            return NO_RANGES;
+        }
+        return new int[] {interval[1], interval[2]};
+    }
+
+    /**
+     * Returns the start and end positions of the disjoint ranges holding the known implementors
+     * of the passed interface, sorted by position.
+     */
+    int[] implementorBounds(DotName interfaceName) {
+        return implementorSet(interfaceName).bounds;
+    }
+
+    /**
+     * Returns the passed classes with the classes of the closure first, in the order of their positions,
+     * so that the ranges of the closure are also ranges of the ordinals assigned from the result.
+     */
+    List<ClassInfo> inOrder(Collection<ClassInfo> classes) {
+        List<ClassInfo> result = new ArrayList<ClassInfo>(classes.size());
+        result.addAll(Arrays.asList(order));
+        for (ClassInfo clazz : classes) {
+            int[] interval = intervals.get(clazz.name());
+            if (interval == null || interval[0] < 0 || order[interval[0]] != clazz) {
+                result.add(clazz);
+            }
+        }
+        return result;
+    }
+
+    private ClassRangeSet implementorSet(DotName interfaceName) {
+        ClassRangeSet set = implementorSets.get(interfaceName);
+        if (set == null) {
+            set = new ClassRangeSet(implementorRanges(interfaceName));
+            ClassRangeSet existing = implementorSets.putIfAbsent(interfaceName, set);
+            if (existing != null) {
+                set = existing;
+            }
+        }
+        return set;
+    }
+
+    private int[] implementorRanges(DotName interfaceName) {
+        List<int[]> ranges = new ArrayList<int[]>();
+        Set<DotName> processed = new HashSet<DotName>();
+        ArrayDeque<DotName> toProcess = new ArrayDeque<DotName>();
+        processed.add(interfaceName);
+        toProcess.add(interfaceName);
+        while (!toProcess.isEmpty()) {
+            List<ClassInfo> list = implementors.get(toProcess.poll());
+            if (list == null) {
+                continue;
+            }
+            for (ClassInfo clazz : list) {
+                if (Modifier.isInterface(clazz.flags())) {
+                    if (processed.add(clazz.name())) {
+                        toProcess.add(clazz.name());
+                    }
+                } else {
+                    int[] interval = intervals.get(clazz.name());
+                    ranges.add(new int[] {interval[0], interval[2]});
+                }
+            }
+        }
+        if (ranges.isEmpty()) {
+            return NO_RANGES;
+        }
+
+        // Ranges of a tree are either nested or disjoint, so dropping nested ones leaves a disjoint union
+        int[][] sorted = ranges.toArray(new int[ranges.size()][]);
+        Arrays.sort(sorted, RANGE_START);
+        int[] bounds = new int[sorted.length * 2];
+        int count = 0;
+        int end = -1;
+        for (int[] range : sorted) {
+            if (range[0] >= end) {
+                bounds[count++] = range[0];
+                bounds[count++] = end = range[1];
+            }
+        }
+        return count == bounds.length ? bounds : Arrays.copyOf(bounds, count);
+    }
+
+    private static final class Node {
+        private final int[] interval;
+        private final Iterator<ClassInfo> children;
+
+        Node(int[] interval, Iterator<ClassInfo> children) {
+            this.interval = interval;
+            this.children = children;
+        }
+    }
+
+    /**
+     * An unmodifiable view of a sorted list of disjoint ranges of the class order.
+     */
+    private final class ClassRangeSet extends AbstractSet<ClassInfo> {
+        // start and end pairs
+        private final int[] bounds;
+        private final int size;
+
+        ClassRangeSet(int[] bounds) {
+            this.bounds = bounds;
+            int size = 0;
+            for (int i = 0; i < bounds.length; i += 2) {
+                size += bounds[i + 1] - bounds[i];
+            }
+            this.size = size;
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            if (!(o instanceof ClassInfo)) {
+                return false;
+            }
+            int[] interval = intervals.get(((ClassInfo) o).name());
+            if (interval == null || interval[0] < 0 || order[interval[0]] != o) {
+                return false;
+            }
+            int position = interval[0];
+            int low = 0;
+            int high = bounds.length / 2 - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                if (position < bounds[mid * 2]) {
+                    high = mid - 1;
+                } else if (position >= bounds[mid * 2 + 1]) {
+                    low = mid + 1;
+                } else {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public Iterator<ClassInfo> iterator() {
+            return new Iterator<ClassInfo>() {
+                private int range;
+                private int position = bounds.length > 0 ? bounds[0] : 0;
+
+                public boolean hasNext() {
+                    return range < bounds.length;
+                }
+
+                public ClassInfo next() {
+                    if (range >= bounds.length) {
+                        throw new NoSuchElementException();
+                    }
+                    ClassInfo next = order[position++];
+                    if (position == bounds[range + 1]) {
+                        range += 2;
+                        if (range < bounds.length) {
+                            position = bounds[range];
+                        }
+                    }
+                    return next;
+                }
+
+                public void remove() {
+                    throw new UnsupportedOperationException();
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,339 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2021 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jboss.jandex;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+
+/**
+ * Updates an existing index to the current content of a directory or jar, re-indexing only the
+ * class files that were added or changed since the existing index was created. Changes are detected
+ * with a fingerprint of every class file, which is recorded in the index (index version 11 and later):
+ * the size and modification time of class files in a directory, or the size and CRC-32 of jar entries.
+ *
+ * <p>Classes whose class file changed or disappeared are removed from the existing index along with
+ * their annotations, subclass, implementor and user entries, and the re-indexed classes are added.
+ * An existing index without fingerprints, or no existing index at all, results in a full indexing run
+ * which records fingerprints for the next one.</p>
+ *
+ * <p>Class files which can not be indexed are either reported to an error stream and skipped, or fail the
+ * update, depending on the constructor. No fingerprint is recorded for a skipped class file, so the next
+ * update tries it again. The same holds for class files older than Java 1.1, which are never indexed.</p>
+ *
+ * <p><b>Thread-Safety</b></p>
+ * This class is not thread-safe and can not be shared between concurrent threads.
+ *
+ * @see Indexer
+ */
+public final class IncrementalIndexer {
+    private final Index previous;
+    private final boolean verbose;
+    private final PrintStream errStream;
+    private int indexed;
+    private int removed;
+
+    /**
+     * Constructs an incremental indexer which updates the given index.
+     *
+     * @param previous the index to update, may be null to index everything
+     */
+    public IncrementalIndexer(Index previous) {
+        this.previous = previous;
+        this.verbose = false;
+        this.errStream = null;
+    }
+
+    /**
+     * Constructs an incremental indexer which updates the given index, and reports class files which
+     * could not be indexed to the passed stream instead of failing.
+     *
+     * @param previous the index to update, may be null to index everything
+     * @param verbose whether to print the stack trace of every error
+     * @param errStream a print stream to print errors, must not be null
+     */
+    public IncrementalIndexer(Index previous, boolean verbose, PrintStream errStream) {
+        if (errStream == null) {
+            throw new IllegalArgumentException("errStream cannot be null");
+        }
+        this.previous = previous;
+        this.verbose = verbose;
+        this.errStream = errStream;
+    }
+
+    /**
+     * Brings the index up to date with the class files found in the given directory and its
+     * subdirectories.
+     *
+     * @param directory the directory containing the class files
+     * @return the updated index
+     * @throws IOException if a class file could not be read or indexed, unless errors are reported to a stream
+     */
+    public Index indexDirectory(File directory) throws IOException {
+        if (directory == null) {
+            throw new IllegalArgumentException("directory cannot be null");
+        }
+        if (!directory.isDirectory()) {
+            throw new FileNotFoundException("Not a directory: " + directory);
+        }
+
+        Update update = new Update();
+        scanDirectory(directory, "", update);
+        return update.complete();
+    }
+
+    /**
+     * Brings the index up to date with the class files contained in the given jar.
+     *
+     * @param jarFile the jar containing the class files
+     * @return the updated index
+     * @throws IOException if the jar could not be read, or a class file could not be read or indexed unless
+     *                     errors are reported to a stream
+     */
+    public Index indexJar(File jarFile) throws IOException {
+        if (jarFile == null) {
+            throw new IllegalArgumentException("jarFile cannot be null");
+        }
+
+        Update update = new Update();
+        JarFile jar = new JarFile(jarFile);
+        try {
+            Enumeration<JarEntry> entries = jar.entries();
+            while (entries.hasMoreElements()) {
+                JarEntry entry = entries.nextElement();
+                if (!entry.getName().endsWith(".class")) {
+                    continue;
+                }
+                SourceFingerprint fingerprint = new SourceFingerprint(entry.getName(), entry.getSize(), entry.getCrc());
+                if (update.changed(fingerprint)) {
+                    InputStream stream = jar.getInputStream(entry);
+                    try {
+                        update.index(stream, fingerprint);
+                    } finally {
+                        safeClose(stream);
+                    }
+                }
+            }
+        } finally {
+            safeClose(jar);
+        }
+        return update.complete();
+    }
+
+    /**
+     * Returns the number of class files that were indexed by the last update.
+     *
+     * @return the number of added or changed class files which were indexed
+     */
+    public int getIndexedCount() {
+        return indexed;
+    }
+
+    /**
+     * Returns the number of classes of the existing index that were dropped by the last update,
+     * either because their class file changed or because it was removed.
+     *
+     * @return the number of dropped classes
+     */
+    public int getRemovedCount() {
+        return removed;
+    }
+
+    private void scanDirectory(File directory, String prefix, Update update) throws IOException {
+        File[] children = directory.listFiles();
+        if (children == null) {
+            throw new FileNotFoundException("Source directory disappeared: " + directory);
+        }
+
+        for (File child : children) {
+            String path = prefix + child.getName();
+            if (child.isDirectory()) {
+                scanDirectory(child, path + '/', update);
+            } else if (path.endsWith(".class")) {
+                SourceFingerprint fingerprint = new SourceFingerprint(path, child.length(), child.lastModified());
+                if (update.changed(fingerprint)) {
+                    InputStream stream = new FileInputStream(child);
+                    try {
+                        update.index(stream, fingerprint);
+                    } finally {
+                        safeClose(stream);
+                    }
+                }
+            }
+        }
+    }
+
+    private static void safeClose(JarFile jar) {
+        try {
+            jar.close();
+        } catch (Exception ignore) {
+        }
+    }
+
+    private static void safeClose(InputStream stream) {
+        try {
+            stream.close();
+        } catch (Exception ignore) {
+        }
+    }
+
+    /**
+     * The state of a single update run.
+     */
+    private final class Update {
+        private final Map<String, DotName> previousPaths = new HashMap<String, DotName>();
+        private final Set<DotName> kept = new HashSet<DotName>();
+        private final Indexer indexer = new Indexer();
+        private final Map<DotName, SourceFingerprint> fingerprints = new HashMap<DotName, SourceFingerprint>();
+
+        Update() {
+            indexed = 0;
+            removed = 0;
+            if (previous != null) {
+                for (Map.Entry<DotName, SourceFingerprint> entry : previous.fingerprints.entrySet()) {
+                    previousPaths.put(entry.getValue().path(), entry.getKey());
+                }
+            }
+        }
+
+        boolean changed(SourceFingerprint fingerprint) {
+            DotName name = previousPaths.get(fingerprint.path());
+            if (name != null && fingerprint.equals(previous.fingerprints.get(name))) {
+                kept.add(name);
+                fingerprints.put(name, fingerprint);
+                return false;
+            }
+            return true;
+        }
+
+        void index(InputStream stream, SourceFingerprint fingerprint) throws IOException {
+            ClassInfo clazz;
+            try {
+                clazz = indexer.index(stream);
+            } catch (Exception e) {
+                String message = e.getMessage() == null ? e.getClass().getSimpleName() : e.getMessage();
+                if (errStream == null) {
+                    IOException exception = new IOException("Could not index " + fingerprint.path() + ": " + message);
+                    exception.initCause(e);
+                    throw exception;
+                }
+                errStream.println("ERROR: Could not index " + fingerprint.path() + ": " + message);
+                if (verbose)
+                    e.printStackTrace(errStream);
+                return;
+            }
+
+            // Class files older than Java 1.1 are not indexed
+            if (clazz == null) {
+                return;
+            }
+            indexed++;
+            fingerprints.put(clazz.name(), fingerprint);
+        }
+
+        Index complete() {
+            Index added = indexer.complete();
+            if (previous == null) {
+                return added.withFingerprints(fingerprints);
+            }
+
+            // A kept class can have been indexed again from another class file
+            kept.removeAll(added.classes.keySet());
+
+            Map<DotName, ClassInfo> classes = new HashMap<DotName, ClassInfo>();
+            for (ClassInfo clazz : previous.classes.values()) {
+                if (kept.contains(clazz.name())) {
+                    classes.put(clazz.name(), clazz);
+                } else {
+                    removed++;
+                }
+            }
+            classes.putAll(added.classes);
+
+            Map<DotName, List<AnnotationInstance>> annotations = new HashMap<DotName, List<AnnotationInstance>>();
+            for (Map.Entry<DotName, List<AnnotationInstance>> entry : previous.annotations.entrySet()) {
+                List<AnnotationInstance> instances = new ArrayList<AnnotationInstance>(entry.getValue().size());
+                for (AnnotationInstance instance : entry.getValue()) {
+                    ClassInfo owner = ParallelIndexer.owner(instance.target());
+                    if (owner == null || kept.contains(owner.name())) {
+                        instances.add(instance);
+                    }
+                }
+                if (!instances.isEmpty()) {
+                    annotations.put(entry.getKey(), instances);
+                }
+            }
+            append(annotations, added.annotations);
+
+            Map<DotName, ModuleInfo> modules = new HashMap<DotName, ModuleInfo>();
+            for (ModuleInfo module : previous.modules.values()) {
+                if (kept.contains(module.moduleInfoClass().name())) {
+                    modules.put(module.name(), module);
+                }
+            }
+            modules.putAll(added.modules);
+
+            Index index = new Index(annotations, retain(previous.subclasses, added.subclasses),
+                    retain(previous.implementors, added.implementors), classes, modules,
+                    retain(previous.users, added.users));
+            return index.withFingerprints(fingerprints);
+        }
+
+        private Map<DotName, List<ClassInfo>> retain(Map<DotName, List<ClassInfo>> previous,
+                                                     Map<DotName, List<ClassInfo>> added) {
+            Map<DotName, List<ClassInfo>> result = new HashMap<DotName, List<ClassInfo>>();
+            for (Map.Entry<DotName, List<ClassInfo>> entry : previous.entrySet()) {
+                List<ClassInfo> classes = new ArrayList<ClassInfo>(entry.getValue().size());
+                for (ClassInfo clazz : entry.getValue()) {
+                    if (kept.contains(clazz.name())) {
+                        classes.add(clazz);
+                    }
+                }
+                if (!classes.isEmpty()) {
+                    result.put(entry.getKey(), classes);
+                }
+            }
+            append(result, added);
+            return result;
+        }
+
+        private <T> void append(Map<DotName, List<T>> target, Map<DotName, List<T>> source) {
+            for (Map.Entry<DotName, List<T>> entry : source.entrySet()) {
+                List<T> list = target.get(entry.getKey());
+                if (list == null) {
+                    target.put(entry.getKey(), new ArrayList<T>(entry.getValue()));
+                } else {
+                    list.addAll(entry.getValue());
+                }
+            }
+        }
+    }
+}
@@ -27,11 +27,14 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * An index useful for quickly processing annotations. The index is read-only and supports
@@ -61,6 +64,30 @@ public final class Index implements IndexView {
     final Map<DotName, ModuleInfo> modules;
     final Map<DotName, List<ClassInfo>> users;
 
+    // class files the classes were read from, only recorded by the IncrementalIndexer
+    final Map<DotName, SourceFingerprint> fingerprints;
+
+    // only present when requested through withHierarchyClosure()
+    private final HierarchyClosure hierarchy;
+
+    // annotation instances split by the kind of their target, built per annotation on first request
+    private final ConcurrentMap<DotName, AnnotationsByKind> annotationsByKind = new ConcurrentHashMap<DotName, AnnotationsByKind>();
+
+    // annotation instances keyed by their member values, built per annotation on first request
+    private final ConcurrentMap<DotName, AnnotationValueIndex> annotationsByValue = new ConcurrentHashMap<DotName, AnnotationValueIndex>();
+
+    // the instances of all names used as keys, built on the first call to canonicalName()
+    private volatile Map<DotName, DotName> canonicalNames;
+
+    // transitive meta-annotations of all annotation types, built on first request
+    private volatile MetaAnnotationIndex metaAnnotations;
+
+    // classes grouped by package, built on first request
+    private volatile PackageIndex packages;
+
+    // dense class ordinals backing ClassSet, built on first request
+    private volatile ClassOrdinals classOrdinals;
+
     Index(Map<DotName, List<AnnotationInstance>> annotations, Map<DotName, List<ClassInfo>> subclasses,
           Map<DotName, List<ClassInfo>> implementors, Map<DotName, ClassInfo> classes, Map<DotName, ModuleInfo> modules,
           Map<DotName, List<ClassInfo>> users) {
@@ -70,6 +97,28 @@ public final class Index implements IndexView {
         this.implementors = Collections.unmodifiableMap(implementors);
         this.modules = Collections.unmodifiableMap(modules);
         this.users = Collections.unmodifiableMap(users);
+        this.fingerprints = Collections.emptyMap();
+        this.hierarchy = null;
+    }
+
+    private Index(Index index, Map<DotName, SourceFingerprint> fingerprints, HierarchyClosure hierarchy) {
+        this.annotations = index.annotations;
+        this.classes = index.classes;
+        this.subclasses = index.subclasses;
+        this.implementors = index.implementors;
+        this.modules = index.modules;
+        this.users = index.users;
+        this.fingerprints = fingerprints;
+        this.hierarchy = hierarchy;
+        this.canonicalNames = index.canonicalNames;
+        // ordinals follow the layout of the hierarchy closure, if there is one
+        this.classOrdinals = hierarchy == index.hierarchy ? index.classOrdinals : null;
+        this.packages = index.packages;
+        this.metaAnnotations = index.metaAnnotations;
+    }
+
+    Index withFingerprints(Map<DotName, SourceFingerprint> fingerprints) {
+        return new Index(this, Collections.unmodifiableMap(fingerprints), hierarchy);
     }
 
 
@@ -166,6 +215,73 @@ public final class Index implements IndexView {
         return indexer.complete();
     }
 
+    /**
+     * Returns an index with the same content as this one, which answers {@link #getAllKnownSubclasses(DotName)}
+     * and {@link #getAllKnownImplementors(DotName)} from a precomputed closure of the class hierarchy instead of
+     * walking the hierarchy on every call. The closure is computed once by this method, and the implementors of
+     * an interface are computed the first time they are requested. Afterwards both queries only cost the size of
+     * their result.
+     *
+     * <p>This is worthwhile when these queries are issued many times against the same index. Unlike the plain
+     * index, the collections returned by both methods are unmodifiable views. The returned index numbers its
+     * classes in the layout of the closure, so that {@link #getAllKnownSubclassSet(DotName)} and
+     * {@link #getAllKnownImplementorSet(DotName)} fill whole ranges of bits. Its ordinals and {@link ClassSet}s
+     * are therefore independent of those of this index.</p>
+     *
+     * @return an index with a precomputed hierarchy closure, which is this index if it already has one
+     */
+    public Index withHierarchyClosure() {
+        if (hierarchy != null) {
+            return this;
+        }
+        return new Index(this, fingerprints, new HierarchyClosure(subclasses, implementors));
+    }
+
+    /**
+     * Returns the instance of the passed name which this index uses to look up its classes, annotations,
+     * subclasses, implementors, users and modules. Lookups compare their argument to the keys of the index
+     * by identity before comparing their structure, so a name which is used for many lookups, especially one
+     * created with {@link DotName#createSimple(String)}, is best resolved once with this method.
+     *
+     * <p>The canonical instances are collected on the first call, which takes time proportional to the size
+     * of the index.</p>
+     *
+     * @param name the name to resolve
+     * @return the instance used by this index, or the passed name if this index does not know it
+     */
+    public DotName canonicalName(DotName name) {
+        if (name == null) {
+            throw new IllegalArgumentException("name cannot be null");
+        }
+
+        Map<DotName, DotName> canonicalNames = this.canonicalNames;
+        if (canonicalNames == null) {
+            // concurrent first calls may each build the map, which yields equivalent maps
+            this.canonicalNames = canonicalNames = buildCanonicalNames();
+        }
+        DotName canonical = canonicalNames.get(name);
+        return canonical != null ? canonical : name;
+    }
+
+    private Map<DotName, DotName> buildCanonicalNames() {
+        Map<DotName, DotName> names = new HashMap<DotName, DotName>();
+        addNames(names, classes.keySet());
+        addNames(names, annotations.keySet());
+        addNames(names, subclasses.keySet());
+        addNames(names, implementors.keySet());
+        addNames(names, users.keySet());
+        addNames(names, modules.keySet());
+        return names;
+    }
+
+    private static void addNames(Map<DotName, DotName> names, Set<DotName> keys) {
+        for (DotName key : keys) {
+            if (!names.containsKey(key)) {
+                names.put(key, key);
+            }
+        }
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -174,6 +290,73 @@ public final class Index implements IndexView {
         return list == null ? EMPTY_ANNOTATION_LIST: Collections.unmodifiableList(list);
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    public List<AnnotationInstance> getAnnotations(DotName annotationName, AnnotationTarget.Kind kind) {
+        if (kind == null) {
+            throw new IllegalArgumentException("kind cannot be null");
+        }
+
+        AnnotationsByKind buckets = annotationsByKind.get(annotationName);
+        if (buckets == null) {
+            List<AnnotationInstance> list = annotations.get(annotationName);
+            if (list == null) {
+                return EMPTY_ANNOTATION_LIST;
+            }
+            buckets = new AnnotationsByKind(list);
+            AnnotationsByKind existing = annotationsByKind.putIfAbsent(annotationName, buckets);
+            if (existing != null) {
+                buckets = existing;
+            }
+        }
+        return buckets.get(kind);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public List<AnnotationInstance> getAnnotationsWithValue(DotName annotationName, AnnotationValue value) {
+        AnnotationValueIndex.checkIndexed(value);
+
+        AnnotationValueIndex values = annotationsByValue.get(annotationName);
+        if (values == null) {
+            List<AnnotationInstance> list = annotations.get(annotationName);
+            if (list == null) {
+                return EMPTY_ANNOTATION_LIST;
+            }
+            values = new AnnotationValueIndex(list);
+            AnnotationValueIndex existing = annotationsByValue.putIfAbsent(annotationName, values);
+            if (existing != null) {
+                values = existing;
+            }
+        }
+        return values.get(value);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public Set<DotName> getMetaAnnotations(DotName annotationName) {
+        return metaAnnotations().getMetaAnnotations(annotationName);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public List<AnnotationInstance> getAnnotationsWithMetaAnnotation(DotName metaAnnotationName) {
+        return metaAnnotations().getAnnotationsWithMetaAnnotation(metaAnnotationName, this);
+    }
+
+    private MetaAnnotationIndex metaAnnotations() {
+        MetaAnnotationIndex metaAnnotations = this.metaAnnotations;
+        if (metaAnnotations == null) {
+            // concurrent first calls may each build the table, which yields equivalent tables
+            this.metaAnnotations = metaAnnotations = new MetaAnnotationIndex(classes.values());
+        }
+        return metaAnnotations;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -217,6 +400,9 @@ public final class Index implements IndexView {
 
     @Override
     public Collection<ClassInfo> getAllKnownSubclasses(DotName className) {
+        if (hierarchy != null) {
+            return hierarchy.getAllKnownSubclasses(className);
+        }
         final Set<ClassInfo> allKnown = new HashSet<ClassInfo>();
         final Set<DotName> processedClasses = new HashSet<DotName>();
         getAllKnownSubClasses(className, allKnown, processedClasses);
@@ -259,6 +445,9 @@ public final class Index implements IndexView {
 
     @Override
     public Set<ClassInfo> getAllKnownImplementors(final DotName interfaceName) {
+        if (hierarchy != null) {
+            return hierarchy.getAllKnownImplementors(interfaceName);
+        }
         final Set<ClassInfo> allKnown = new HashSet<ClassInfo>();
         final Set<DotName> subInterfacesToProcess = new HashSet<DotName>();
         final Set<DotName> processedClasses = new HashSet<DotName>();
@@ -293,6 +482,18 @@ public final class Index implements IndexView {
             }
         }
     }
+    /**
+     * {@inheritDoc}
+     */
+    public List<ClassInfo> getClassesInPackage(DotName packageName, boolean recursive) {
+        PackageIndex packages = this.packages;
+        if (packages == null) {
+            // concurrent first calls may each build the table, which yields equivalent tables
+            this.packages = packages = new PackageIndex(classes.values());
+        }
+        return packages.getClasses(packageName, recursive);
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -387,4 +588,128 @@ public final class Index implements IndexView {
         }
         return Collections.unmodifiableList(ret);
     }
+
+    /**
+     * Returns the ordinal of the passed class in this index. The classes of an index are numbered from
+     * {@code 0} to one less than the number of known classes. Ordinals are the positions used by
+     * {@link ClassSet}, and are only meaningful for the index that assigned them.
+     *
+     * <p>The ordinals are assigned on the first call to any of the ordinal or {@code ClassSet} methods,
+     * which takes time proportional to the number of classes.</p>
+     *
+     * @param className the name of the class
+     * @return the ordinal of the class, or -1 if this index does not know it
+     * @since 2.4.3
+     */
+    public int getClassOrdinal(DotName className) {
+        return classOrdinals().ordinal(className);
+    }
+
+    /**
+     * Returns the class with the passed ordinal.
+     *
+     * @param ordinal an ordinal returned by {@link #getClassOrdinal(DotName)}
+     * @return the class with the given ordinal
+     * @throws IndexOutOfBoundsException if the ordinal is negative or not less than the number of known classes
+     * @since 2.4.3
+     */
+    public ClassInfo getClassByOrdinal(int ordinal) {
+        ClassOrdinals ordinals = classOrdinals();
+        if (ordinal < 0 || ordinal >= ordinals.size()) {
+            throw new IndexOutOfBoundsException("No class has the ordinal " + ordinal);
+        }
+        return ordinals.get(ordinal);
+    }
+
+    /**
+     * Returns all classes of this index as a {@link ClassSet}.
+     *
+     * @return a set containing every known class
+     * @since 2.4.3
+     */
+    public ClassSet getKnownClassSet() {
+        return classOrdinals().all();
+    }
+
+    /**
+     * Returns the result of {@link #getAllKnownSubclasses(DotName)} as a {@link ClassSet}, which can be
+     * combined with other sets of this index without hashing.
+     *
+     * @param className the super class of the desired subclasses
+     * @return a set of all known subclasses
+     * @since 2.4.3
+     */
+    public ClassSet getAllKnownSubclassSet(DotName className) {
+        if (hierarchy != null) {
+            return classOrdinals().ranges(hierarchy.subclassBounds(className));
+        }
+        return classOrdinals().allKnownSubclasses(className);
+    }
+
+    /**
+     * Returns the result of {@link #getAllKnownImplementors(DotName)} as a {@link ClassSet}, which can be
+     * combined with other sets of this index without hashing.
+     *
+     * @param interfaceName the interface of the desired implementors
+     * @return a set of all known implementors
+     * @since 2.4.3
+     */
+    public ClassSet getAllKnownImplementorSet(DotName interfaceName) {
+        if (hierarchy != null) {
+            return classOrdinals().ranges(hierarchy.implementorBounds(interfaceName));
+        }
+        return classOrdinals().allKnownImplementors(interfaceName);
+    }
+
+    /**
+     * Returns the classes which are directly annotated with the passed annotation, that is the targets of
+     * its instances of kind {@link AnnotationTarget.Kind#CLASS}. Classes which only carry the annotation on
+     * a member are not included.
+     *
+     * @param annotationName the name of the annotation
+     * @return a set of the annotated classes
+     * @since 2.4.3
+     */
+    public ClassSet getAnnotatedClassSet(DotName annotationName) {
+        ClassOrdinals ordinals = classOrdinals();
+        ClassSet set = ordinals.empty();
+        for (AnnotationInstance instance : getAnnotations(annotationName, AnnotationTarget.Kind.CLASS)) {
+            set.set(ordinals.ordinal(instance.target().asClass()));
+        }
+        return set;
+    }
+
+    /**
+     * Returns the classes whose access flags include all of the passed modifiers, for example
+     * {@link Modifier#ABSTRACT} or {@link Modifier#INTERFACE}.
+     *
+     * @param modifiers the modifier bits, as defined by {@link Modifier}
+     * @return a set of the classes having all of the modifiers
+     * @since 2.4.3
+     */
+    public ClassSet getClassSetWithModifiers(int modifiers) {
+        ClassOrdinals ordinals = classOrdinals();
+        ClassSet set = ordinals.empty();
+        for (int i = 0; i < ordinals.size(); i++) {
+            if ((ordinals.get(i).flags() & modifiers) == modifiers) {
+                set.set(i);
+            }
+        }
+        return set;
+    }
+
+    private ClassOrdinals classOrdinals() {
+        ClassOrdinals ordinals = this.classOrdinals;
+        if (ordinals == null) {
+            // all sets of this index must share a single numbering
+            synchronized (this) {
+                ordinals = this.classOrdinals;
+                if (ordinals == null) {
+                    Collection<ClassInfo> known = hierarchy != null ? hierarchy.inOrder(classes.values()) : classes.values();
+                    this.classOrdinals = ordinals = new ClassOrdinals(known, subclasses, implementors);
+                }
+            }
+        }
+        return ordinals;
+    }
 }
@@ -19,6 +19,7 @@
 package org.jboss.jandex;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
@@ -48,7 +49,7 @@ import java.util.Set;
  */
 final class IndexReaderV2 extends IndexReaderImpl {
     static final int MIN_VERSION = 6;
-    static final int MAX_VERSION = 10;
+    static final int MAX_VERSION = 11;
     static final int MAX_DATA_VERSION = 4;
     private static final byte NULL_TARGET_TAG = 0;
     private static final byte FIELD_TAG = 1;
@@ -101,31 +102,13 @@ final class IndexReaderV2 extends IndexReaderImpl {
             int annotationsSize = stream.readPackedU32();
             int implementorsSize = stream.readPackedU32();
             int subclassesSize = stream.readPackedU32();
-            int usersSize = 0;
-            if (version >= 10) {
-                usersSize = stream.readPackedU32();
-                users = new HashMap<DotName, Set<DotName>>(usersSize);
+            readTables(stream, version);
+            Index index = readClasses(stream, annotationsSize, implementorsSize, subclassesSize, version);
+            if (version >= 11) {
+                index = index.withFingerprints(readFingerprints(stream));
+                skipDirectory(stream);
             }
-
-            readByteTable(stream);
-            readStringTable(stream);
-            readNameTable(stream);
-
-            typeTable = new Type[stream.readPackedU32() + 1];
-            typeListTable = new Type[stream.readPackedU32() + 1][];
-            annotationTable = new AnnotationInstance[stream.readPackedU32() + 1];
-
-            readTypeTable(stream);
-            readTypeListTable(stream);
-            if (version >= 10) {
-                readUsers(stream, usersSize);
-            }
-            readMethodTable(stream, version);
-            readFieldTable(stream);
-            if (version >= 10) {
-                readRecordComponentTable(stream);
-            }
-            return readClasses(stream, annotationsSize, implementorsSize, subclassesSize, version);
+            return index;
         } finally {
             byteTable = null;
             stringTable = null;
@@ -140,6 +123,164 @@ final class IndexReaderV2 extends IndexReaderImpl {
         }
     }
 
+    /**
+     * Reads the header and shared tables of a version 11 or later index, leaving the class
+     * entries undecoded. The returned index decodes class entries on demand, using the
+     * directory at the end of the passed buffer, which must span exactly one index.
+     */
+    LazyIndex readLazily(int version, ByteBuffer buffer) throws IOException {
+        if (version < 11) {
+            throw new IllegalArgumentException("Index version " + version + " does not contain a directory");
+        }
+
+        PackedDataInputStream stream = this.input;
+        // Skip the annotation, implementor and subclass map sizes
+        stream.readPackedU32();
+        stream.readPackedU32();
+        stream.readPackedU32();
+        readTables(stream, version);
+
+        int directoryOffset = buffer.getInt(buffer.limit() - 4);
+        int classesSize = buffer.getInt(directoryOffset);
+        int modulesOffset = buffer.getInt(directoryOffset + 4 + 8 * classesSize);
+
+        Map<DotName, List<AnnotationInstance>> moduleAnnotations = new HashMap<DotName, List<AnnotationInstance>>();
+        Map<DotName, ModuleInfo> modules = readModules(streamAt(buffer, modulesOffset), moduleAnnotations, version);
+
+        return new LazyIndex(this, buffer, version, directoryOffset, modules, moduleAnnotations, users);
+    }
+
+    /**
+     * Returns the position of the passed name in the name table, or -1 if it is not present.
+     * The table is sorted by the string form of the names, so a binary search suffices.
+     */
+    int positionOf(DotName name) {
+        int low = 1;
+        int high = nameTable.length - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int cmp = nameTable[mid].compareTo(name);
+            if (cmp < 0) {
+                low = mid + 1;
+            } else if (cmp > 0) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Decodes the list of class slots stored at the passed offset of the directory.
+     */
+    static int[] readClassSlots(ByteBuffer buffer, int offset) throws IOException {
+        PackedDataInputStream stream = streamAt(buffer, offset);
+        int[] slots = new int[stream.readPackedU32()];
+        for (int i = 0; i < slots.length; i++) {
+            slots[i] = stream.readPackedU32();
+        }
+        return slots;
+    }
+
+    /**
+     * Decodes the class entry starting at the passed offset of a buffer previously passed
+     * to {@link #readLazily(int, ByteBuffer)}.
+     */
+    ClassInfo readClassAt(ByteBuffer buffer, int offset, int version) throws IOException {
+        return readClassEntry(streamAt(buffer, offset), null, version);
+    }
+
+    /**
+     * Builds a complete index out of fully decoded class entries, in the same manner as a
+     * sequential read.
+     */
+    Index buildIndex(ClassInfo[] classEntries, Map<DotName, ModuleInfo> modules,
+                     Map<DotName, List<AnnotationInstance>> moduleAnnotations) {
+        HashMap<DotName, ClassInfo> classes = new HashMap<DotName, ClassInfo>(classEntries.length);
+        HashMap<DotName, List<ClassInfo>> subclasses = new HashMap<DotName, List<ClassInfo>>();
+        HashMap<DotName, List<ClassInfo>> implementors = new HashMap<DotName, List<ClassInfo>>();
+        HashMap<DotName, List<AnnotationInstance>> masterAnnotations = new HashMap<DotName, List<AnnotationInstance>>();
+
+        for (ClassInfo clazz : classEntries) {
+            for (Entry<DotName, List<AnnotationInstance>> entry : clazz.annotations().entrySet()) {
+                addToMaster(masterAnnotations, entry.getKey(), entry.getValue());
+            }
+            addClassToMap(subclasses, clazz.superName(), clazz);
+            for (Type interfaceType : clazz.interfaceTypeArray()) {
+                addClassToMap(implementors, interfaceType.name(), clazz);
+            }
+            classes.put(clazz.name(), clazz);
+        }
+        for (Entry<DotName, List<AnnotationInstance>> entry : moduleAnnotations.entrySet()) {
+            addToMaster(masterAnnotations, entry.getKey(), entry.getValue());
+        }
+
+        return new Index(masterAnnotations, subclasses, implementors, classes, modules, resolveUsers(classes));
+    }
+
+    private static PackedDataInputStream streamAt(ByteBuffer buffer, int offset) {
+        ByteBuffer slice = buffer.duplicate();
+        slice.position(offset);
+        return new PackedDataInputStream(new ByteBufferInputStream(slice));
+    }
+
+    private void readTables(PackedDataInputStream stream, int version) throws IOException {
+        int usersSize = 0;
+        if (version >= 10) {
+            usersSize = stream.readPackedU32();
+            users = new HashMap<DotName, Set<DotName>>(usersSize);
+        }
+
+        readByteTable(stream);
+        readStringTable(stream);
+        readNameTable(stream);
+
+        typeTable = new Type[stream.readPackedU32() + 1];
+        typeListTable = new Type[stream.readPackedU32() + 1][];
+        annotationTable = new AnnotationInstance[stream.readPackedU32() + 1];
+
+        readTypeTable(stream);
+        readTypeListTable(stream);
+        if (version >= 10) {
+            readUsers(stream, usersSize);
+        }
+        readMethodTable(stream, version);
+        readFieldTable(stream);
+        if (version >= 10) {
+            readRecordComponentTable(stream);
+        }
+    }
+
+    private Map<DotName, SourceFingerprint> readFingerprints(PackedDataInputStream stream) throws IOException {
+        int size = stream.readPackedU32();
+        Map<DotName, SourceFingerprint> fingerprints = new HashMap<DotName, SourceFingerprint>(size * 4 / 3 + 1);
+        for (int i = 0; i < size; i++) {
+            DotName name = nameTable[stream.readPackedU32()];
+            String path = stringTable[stream.readPackedU32()];
+            fingerprints.put(name, new SourceFingerprint(path, stream.readLong(), stream.readLong()));
+        }
+        return fingerprints;
+    }
+
+    private void skipDirectory(PackedDataInputStream stream) throws IOException {
+        int classesSize = stream.readInt();
+        // class records and the modules offset
+        stream.skipBytes(8 * classesSize + 4);
+
+        int annotatedSize = stream.readInt();
+        stream.skipBytes(8 * annotatedSize);
+        for (int i = 0; i < annotatedSize; i++) {
+            int slots = stream.readPackedU32();
+            for (int j = 0; j < slots; j++) {
+                stream.readPackedU32();
+            }
+        }
+
+        // directory offset
+        stream.readInt();
+    }
+
     private void readUsers(PackedDataInputStream stream, int usersSize) throws IOException {
         for (int i = 0; i < usersSize; i++) {
             DotName user = nameTable[stream.readPackedU32()];
@@ -608,7 +749,9 @@ final class IndexReaderV2 extends IndexReaderImpl {
             if (instances.size() > 0) {
                 DotName annotationName = instances.get(0).name();
                 annotations.put(annotationName, instances);
-                addToMaster(masterAnnotations, annotationName, instances);
+                if (masterAnnotations != null) {
+                    addToMaster(masterAnnotations, annotationName, instances);
+                }
             }
         }
 
@@ -812,19 +955,8 @@ final class IndexReaderV2 extends IndexReaderImpl {
             }
             classes.put(clazz.name(), clazz);
         }
-        Map<DotName, List<ClassInfo>> users = null;
-        if (version >= 10) {
-            users = new HashMap<DotName, List<ClassInfo>>(this.users.size());
-            for (Entry<DotName, Set<DotName>> entry : this.users.entrySet()) {
-                List<ClassInfo> usedBy = new ArrayList<ClassInfo>(entry.getValue().size());
-                users.put(entry.getKey(), usedBy);
-                for (DotName usedByName : entry.getValue()) {
-                    usedBy.add(classes.get(usedByName));
-                }
-            }
-        } else {
-            users = Collections.emptyMap();
-        }
+        Map<DotName, List<ClassInfo>> users = (version >= 10) ?
+            resolveUsers(classes) : Collections.<DotName, List<ClassInfo>>emptyMap();
 
         Map<DotName, ModuleInfo> modules = (version >= 10) ?
             readModules(stream, masterAnnotations, version) : Collections.<DotName, ModuleInfo>emptyMap();
@@ -832,6 +964,18 @@ final class IndexReaderV2 extends IndexReaderImpl {
         return new Index(masterAnnotations, subclasses, implementors, classes, modules, users);
     }
 
+    private Map<DotName, List<ClassInfo>> resolveUsers(Map<DotName, ClassInfo> classes) {
+        Map<DotName, List<ClassInfo>> users = new HashMap<DotName, List<ClassInfo>>(this.users.size());
+        for (Entry<DotName, Set<DotName>> entry : this.users.entrySet()) {
+            List<ClassInfo> usedBy = new ArrayList<ClassInfo>(entry.getValue().size());
+            users.put(entry.getKey(), usedBy);
+            for (DotName usedByName : entry.getValue()) {
+                usedBy.add(classes.get(usedByName));
+            }
+        }
+        return users;
+    }
+
     private Map<DotName, ModuleInfo> readModules(PackedDataInputStream stream,
                                                  Map<DotName, List<AnnotationInstance>> masterAnnotations,
                                                  int version) throws IOException {
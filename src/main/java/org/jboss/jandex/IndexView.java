@@ -19,6 +19,7 @@
 package org.jboss.jandex;
 
 import java.util.Collection;
+import java.util.Set;
 
 /**
  * The basic contract for accessing Jandex indexed information.
@@ -100,6 +101,21 @@ public interface IndexView {
      */
     public Collection<ClassInfo> getAllKnownImplementors(final DotName interfaceName);
 
+    /**
+     * Returns the classes declared in the given package, including nested classes. If {@code recursive}
+     * is true, the classes of all subpackages are returned as well, so that {@code com.acme} also
+     * covers {@code com.acme.api} and {@code com.acme.api.spi}. Classes of the unnamed package are
+     * never returned.
+     *
+     * <p>The package table is built when packages are first looked up.</p>
+     *
+     * @param packageName the name of the package, for example {@code com.acme.api}
+     * @param recursive whether to include the classes of subpackages
+     * @return a non-null collection of the classes in the package
+     * @since 2.4.3
+     */
+    public Collection<ClassInfo> getClassesInPackage(DotName packageName, boolean recursive);
+
     /**
      * Obtains a list of instances for the specified annotation.
      * This is done using an O(1) lookup. Valid instance targets include
@@ -110,6 +126,64 @@ public interface IndexView {
      */
     public Collection<AnnotationInstance> getAnnotations(DotName annotationName);
 
+    /**
+     * Obtains a list of instances for the specified annotation whose target is of the specified kind,
+     * for example all instances of an annotation on methods. The instances are in the same order as
+     * in {@link #getAnnotations(DotName)}.
+     *
+     * @param annotationName the name of the annotation to look for
+     * @param kind the kind of annotation target to look for
+     * @return a non-null list of annotation instances
+     * @since 2.4.3
+     */
+    public Collection<AnnotationInstance> getAnnotations(DotName annotationName, AnnotationTarget.Kind kind);
+
+    /**
+     * Obtains a list of instances for the specified annotation which specify the given value for one of
+     * their members, for example all instances of {@code @Named("x")}. The value is created with
+     * {@link AnnotationValue#createStringValue(String, String)},
+     * {@link AnnotationValue#createEnumValue(String, DotName, String)} or
+     * {@link AnnotationValue#createClassValue(String, Type)}, and its name is the name of the member. A member
+     * holding an array matches if any of its elements equals the value. Default values of members are not
+     * known to the index, so only instances which specify the value explicitly are returned.
+     *
+     * <p>The lookup table of an annotation is built when its instances are first looked up by value.</p>
+     *
+     * @param annotationName the name of the annotation to look for
+     * @param value the member name and the string, enum or class value to look for
+     * @return a non-null list of annotation instances
+     * @throws IllegalArgumentException if the value is not a string, enum or class value
+     * @since 2.4.3
+     */
+    public Collection<AnnotationInstance> getAnnotationsWithValue(DotName annotationName, AnnotationValue value);
+
+    /**
+     * Returns the meta-annotations of the given annotation type, that is the annotations declared on the
+     * annotation type, the annotations declared on those annotation types, and so on. Annotation types
+     * which are not part of the index contribute their own name, but not their meta-annotations.
+     *
+     * <p>The meta-annotations of all annotation types are computed together, when meta-annotations are
+     * first looked up.</p>
+     *
+     * @param annotationName the name of the annotation type
+     * @return a non-null set of the names of all meta-annotations, empty if the type is unknown
+     * @since 2.4.3
+     */
+    public Set<DotName> getMetaAnnotations(DotName annotationName);
+
+    /**
+     * Obtains the instances of all annotation types which are meta-annotated with the given annotation,
+     * directly or through other annotation types, as defined by {@link #getMetaAnnotations(DotName)}.
+     * This resolves stereotypes: for a stereotype marker annotation, the instances of all stereotypes
+     * are returned. Instances of the given annotation itself are not included, unless the annotation is
+     * meta-annotated with itself.
+     *
+     * @param metaAnnotationName the name of the meta-annotation
+     * @return a non-null list of annotation instances
+     * @since 2.4.3
+     */
+    public Collection<AnnotationInstance> getAnnotationsWithMetaAnnotation(DotName metaAnnotationName);
+
     /**
      * Obtains a list of instances for the specified annotation. If the specified annotation is repeatable (JLS 9.6), the result also contains all values from
      * all instances of the container annotation. In this case, the {@link AnnotationInstance#target()} returns the target of the container annotation instance.
@@ -19,10 +19,13 @@
 package org.jboss.jandex;
 
 import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.IdentityHashMap;
 import java.util.Iterator;
@@ -54,7 +57,7 @@ import java.util.TreeMap;
  */
 final class IndexWriterV2 extends IndexWriterImpl{
     static final int MIN_VERSION = 6;
-    static final int MAX_VERSION = 10;
+    static final int MAX_VERSION = 11;
 
     // babelfish (no h)
     private static final int MAGIC = 0xBABE1F15;
@@ -93,10 +96,11 @@ final class IndexWriterV2 extends IndexWriterImpl{
 
     private NameTable names;
     private HashMap<DotName, Integer> nameTable;
-    private TreeMap<String, DotName> sortedNameTable;
     private ReferenceTable<AnnotationInstance> annotationTable;
     private ReferenceTable<Type> typeTable;
     private ReferenceTable<Type[]> typeListTable;
+    private ClassInfo[] classEntries;
+    private int[] classEntryOffsets;
 
 
     static class ReferenceEntry {
@@ -220,10 +224,16 @@ final class IndexWriterV2 extends IndexWriterImpl{
         }
         writeClasses(stream, index, version);
 
+        int modulesOffset = stream.size();
         if (version >= 10) {
             writeModules(stream, index, version);
         }
 
+        if (version >= 11) {
+            writeFingerprints(stream, index.fingerprints);
+            writeDirectory(stream, modulesOffset);
+        }
+
         stream.flush();
         return stream.size();
     }
@@ -442,11 +452,14 @@ final class IndexWriterV2 extends IndexWriterImpl{
     private void writeNameTable(PackedDataOutputStream stream) throws IOException {
         stream.writePackedU32(nameTable.size());
 
+        // Names are written in order, which puts every prefix ahead of the names it is a prefix of
+        DotName[] sortedNames = nameTable.keySet().toArray(new DotName[nameTable.size()]);
+        Arrays.sort(sortedNames);
+
         // Zero is reserved for null
         int pos = 1;
-        for (Entry<String, DotName> entry : sortedNameTable.entrySet()) {
-            nameTable.put(entry.getValue(), pos++);
-            DotName name = entry.getValue();
+        for (DotName name : sortedNames) {
+            nameTable.put(name, pos++);
             assert name.isComponentized();
 
             int nameDepth = 0;
@@ -534,15 +547,101 @@ final class IndexWriterV2 extends IndexWriterImpl{
     private void writeClasses(PackedDataOutputStream stream, Index index, int version) throws IOException {
         Collection<ClassInfo> classes = index.getKnownClasses();
         stream.writePackedU32(classes.size());
+        classEntries = new ClassInfo[classes.size()];
+        classEntryOffsets = new int[classes.size()];
+        int i = 0;
         for (ClassInfo clazz: classes) {
+            classEntries[i] = clazz;
+            classEntryOffsets[i++] = stream.size();
             writeClassEntry(stream, clazz, version);
         }
     }
 
+    /**
+     * Writes the directory used for random access to the class entries. The directory starts with
+     * fixed size records of class name position and class entry offset, sorted by name position
+     * (and therefore by class name, since the name table is sorted), followed by the offset of the
+     * module section. Then come fixed size records of annotation name position and the offset of a
+     * list of the classes holding that annotation, again sorted by name position. Each list gives
+     * the slots of the classes in the class directory, in the order of the class entries. Finally,
+     * a fixed size integer points to the start of the directory, so that it can be located from the
+     * end of the index.
+     */
+    private void writeDirectory(PackedDataOutputStream stream, int modulesOffset) throws IOException {
+        int directoryOffset = stream.size();
+        int classesSize = classEntries.length;
+
+        final int[] namePositions = new int[classesSize];
+        Integer[] sorted = new Integer[classesSize];
+        for (int i = 0; i < classesSize; i++) {
+            namePositions[i] = positionOf(classEntries[i].name());
+            sorted[i] = i;
+        }
+        Arrays.sort(sorted, new Comparator<Integer>() {
+            public int compare(Integer o1, Integer o2) {
+                return namePositions[o1] - namePositions[o2];
+            }
+        });
+
+        int[] slots = new int[classesSize];
+        stream.writeInt(classesSize);
+        for (int slot = 0; slot < classesSize; slot++) {
+            int ordinal = sorted[slot];
+            slots[ordinal] = slot;
+            stream.writeInt(namePositions[ordinal]);
+            stream.writeInt(classEntryOffsets[ordinal]);
+        }
+        stream.writeInt(modulesOffset);
+
+        TreeMap<Integer, List<Integer>> annotated = new TreeMap<Integer, List<Integer>>();
+        for (int i = 0; i < classesSize; i++) {
+            for (DotName annotation : classEntries[i].annotations().keySet()) {
+                Integer position = positionOf(annotation);
+                List<Integer> classSlots = annotated.get(position);
+                if (classSlots == null) {
+                    classSlots = new ArrayList<Integer>();
+                    annotated.put(position, classSlots);
+                }
+                classSlots.add(slots[i]);
+            }
+        }
+
+        // Lists follow the fixed size records: the annotation count, two integers per record, and this table
+        int listsOffset = stream.size() + 4 + 8 * annotated.size();
+        ByteArrayOutputStream listBytes = new ByteArrayOutputStream();
+        PackedDataOutputStream lists = new PackedDataOutputStream(listBytes);
+
+        stream.writeInt(annotated.size());
+        for (Entry<Integer, List<Integer>> entry : annotated.entrySet()) {
+            stream.writeInt(entry.getKey());
+            stream.writeInt(listsOffset + lists.size());
+
+            List<Integer> classSlots = entry.getValue();
+            lists.writePackedU32(classSlots.size());
+            for (Integer slot : classSlots) {
+                lists.writePackedU32(slot);
+            }
+        }
+        lists.flush();
+        listBytes.writeTo(stream);
+
+        stream.writeInt(directoryOffset);
+    }
+
+    private void writeFingerprints(PackedDataOutputStream stream, Map<DotName, SourceFingerprint> fingerprints) throws IOException {
+        stream.writePackedU32(fingerprints.size());
+        for (Entry<DotName, SourceFingerprint> entry : fingerprints.entrySet()) {
+            SourceFingerprint fingerprint = entry.getValue();
+            stream.writePackedU32(positionOf(entry.getKey()));
+            stream.writePackedU32(positionOf(fingerprint.path()));
+            stream.writeLong(fingerprint.size());
+            stream.writeLong(fingerprint.stamp());
+        }
+    }
+
     private void writeModules(PackedDataOutputStream stream, Index index, int version) throws IOException {
         Collection<ModuleInfo> modules = index.getKnownModules();
         stream.writePackedU32(modules.size());
-        addClassName(DotName.createSimple("module-info"));
 
         for (ModuleInfo module : modules) {
             writeClassEntry(stream, module.moduleInfoClass(), version);
@@ -829,7 +928,6 @@ final class IndexWriterV2 extends IndexWriterImpl{
 
     private void buildTables(Index index, int version) {
         nameTable = new HashMap<DotName, Integer>();
-        sortedNameTable = new TreeMap<String, DotName>();
 
         annotationTable = new ReferenceTable<AnnotationInstance>();
         typeTable = new ReferenceTable<Type>();
@@ -856,6 +954,13 @@ final class IndexWriterV2 extends IndexWriterImpl{
                 }
             }
         }
+
+        if (version >= 11) {
+            for (Entry<DotName, SourceFingerprint> entry : index.fingerprints.entrySet()) {
+                addClassName(entry.getKey());
+                addString(entry.getValue().path());
+            }
+        }
     }
 
     private void addClass(ClassInfo clazz) {
@@ -1092,7 +1197,6 @@ final class IndexWriterV2 extends IndexWriterImpl{
         if (! nameTable.containsKey(name)) {
             addString(name.local());
             nameTable.put(name, null);
-            sortedNameTable.put(name.toString(), name);
         }
 
         DotName prefix = name.prefix();
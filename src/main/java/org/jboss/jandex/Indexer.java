@@ -18,13 +18,13 @@
 
 package org.jboss.jandex;
 
-import java.io.BufferedInputStream;
 import java.io.ByteArrayInputStream;
 import java.io.DataInputStream;
 import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.lang.reflect.Modifier;
+import java.nio.ByteBuffer;
 import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -59,6 +59,9 @@ import static org.jboss.jandex.ClassInfo.EnclosingMethodInfo;
  * Numerous optimizations are taken during indexing to attempt to minimize the
  * CPU and I/O cost, however, the Java class file format was not designed for
  * partial searching, which ultimately limits the efficiency of processing them.
+ * Tools that need less than the complete information can construct the indexer
+ * with {@link IndexerOptions}, so that the parts of the class file they never look
+ * at are skipped.
  *
  * <p>
  * <b>Thread-Safety</b> This class is not thread-safe can <b>not</b> be
@@ -207,6 +210,33 @@ public final class Indexer {
 
     private final static byte[] INIT_METHOD_NAME = Utils.toUTF8("<init>");
 
+    private final static int INITIAL_BUFFER = 8192;
+    // larger class buffers are released after use rather than recycled
+    private final static int MAX_RETAINED_BUFFER = 1 << 20;
+
+    /**
+     * A byte array input stream that can be pointed at a new array range, so that the same stream,
+     * and the data input stream wrapping it, serve every class processed by an indexer.
+     */
+    private static final class ClassDataInputStream extends ByteArrayInputStream {
+        private static final byte[] EMPTY = new byte[0];
+
+        ClassDataInputStream() {
+            super(EMPTY);
+        }
+
+        void setData(byte[] buf, int offset, int length) {
+            this.buf = buf;
+            this.pos = offset;
+            this.mark = offset;
+            this.count = Math.min(offset + length, buf.length);
+        }
+
+        void release() {
+            setData(EMPTY, 0, 0);
+        }
+    }
+
     private static class InnerClassInfo {
         private InnerClassInfo(DotName innerClass, DotName enclosingClass, String simpleName, int flags) {
             this.innnerClass = innerClass;
@@ -233,13 +263,6 @@ public final class Indexer {
         return true;
     }
 
-    private static byte[] sizeToFit(byte[] buf, int needed, int offset, int remainingEntries) {
-        if (offset + needed > buf.length) {
-            buf = Arrays.copyOf(buf, buf.length + Math.max(needed, (remainingEntries + 1) * 20));
-        }
-        return buf;
-    }
-
     private static void skipFully(InputStream s, long n) throws IOException {
         long skipped;
         long total = 0;
@@ -265,22 +288,33 @@ public final class Indexer {
     private byte[] constantPool;
     private int[] constantPoolOffsets;
     private byte[] constantPoolAnnoAttrributes;
+    private boolean constantPoolHasAnnotations;
     private ClassInfo currentClass;
     private HashMap<DotName, List<AnnotationInstance>> classAnnotations;
-    private ArrayList<AnnotationInstance> elementAnnotations;
-    private IdentityHashMap<AnnotationTarget, Object> signaturePresent;
-    private List<Object> signatures;
     private int classSignatureIndex;
     private Map<DotName, InnerClassInfo> innerClasses;
-    private IdentityHashMap<AnnotationTarget, List<TypeAnnotationState>> typeAnnotations;
-    private List<MethodInfo> methods;
-    private List<FieldInfo> fields;
-    private List<RecordComponentInfo> recordComponents;
     private byte[][] debugParameterNames;
     private byte[][] methodParameterNames;
     private List<DotName> modulePackages;
     private DotName moduleMainClass;
 
+    // Class lifespan collections, recycled and cleared after each class
+    private final ArrayList<AnnotationInstance> elementAnnotations = new ArrayList<AnnotationInstance>();
+    private final IdentityHashMap<AnnotationTarget, Object> signaturePresent = new IdentityHashMap<AnnotationTarget, Object>();
+    private final List<Object> signatures = new ArrayList<Object>();
+    private final IdentityHashMap<AnnotationTarget, List<TypeAnnotationState>> typeAnnotations = new IdentityHashMap<AnnotationTarget, List<TypeAnnotationState>>();
+    private final List<MethodInfo> methods = new ArrayList<MethodInfo>();
+    private final List<FieldInfo> fields = new ArrayList<FieldInfo>();
+    private final List<RecordComponentInfo> recordComponents = new ArrayList<RecordComponentInfo>();
+
+    // Scratch buffers, recycled across classes
+    private final ClassDataInputStream classStream = new ClassDataInputStream();
+    private final DataInputStream classDataInput = new DataInputStream(classStream);
+    private byte[] classBuffer;
+    private int[] offsetBuffer = new int[0];
+    private byte[] attributeBuffer = new byte[0];
+    private int constantPoolCount;
+
     // Index lifespan fields
     private Map<DotName, List<AnnotationInstance>> masterAnnotations;
     private Map<DotName, List<ClassInfo>> subclasses;
@@ -291,6 +325,63 @@ public final class Indexer {
     private NameTable names;
     private GenericSignatureParser signatureParser;
 
+    // Options, fixed for the lifetime of the indexer
+    private final boolean[] skippedAttributes = new boolean[HAS_RECORD + 1];
+    private final boolean recordUsers;
+    private final boolean storeAllMembers;
+    private final boolean skipUnannotatedClasses;
+    private final AnnotationNameFilter annotationFilter;
+
+    // backs the name table of every indexing run, when several indexers share their names
+    private final NameTable sharedNames;
+
+    /**
+     * Constructs an indexer which processes the complete class file information.
+     */
+    public Indexer() {
+        this(new IndexerOptions());
+    }
+
+    /**
+     * Constructs an indexer which processes the parts of the class file selected by
+     * the passed options. The options are copied, later changes to them have no effect.
+     *
+     * @param options the indexer options
+     * @throws IllegalArgumentException if options is null
+     */
+    public Indexer(IndexerOptions options) {
+        this(options, null);
+    }
+
+    /**
+     * Constructs an indexer whose names, types and members are interned into the passed table as well,
+     * so that indexers running on different threads produce the same instances.
+     */
+    Indexer(IndexerOptions options, NameTable sharedNames) {
+        if (options == null) {
+            throw new IllegalArgumentException("options cannot be null");
+        }
+        // Skipped attributes are never classified, so processAttributes passes over them
+        if (!options.genericSignatures()) {
+            skippedAttributes[HAS_SIGNATURE] = true;
+            skippedAttributes[HAS_RUNTIME_TYPE_ANNOTATION] = true;
+        }
+        if (!options.typeAnnotations()) {
+            skippedAttributes[HAS_RUNTIME_TYPE_ANNOTATION] = true;
+        }
+        if (!options.parameterNames()) {
+            skippedAttributes[HAS_METHOD_PARAMETERS] = true;
+            // the code attribute is only read for its local variable table
+            skippedAttributes[HAS_CODE] = true;
+            skippedAttributes[HAS_LOCAL_VARIABLE_TABLE] = true;
+        }
+        recordUsers = options.users();
+        storeAllMembers = options.members();
+        skipUnannotatedClasses = options.skipUnannotatedClasses();
+        annotationFilter = options.annotationNames() == null ? null : new AnnotationNameFilter(options.annotationNames());
+        this.sharedNames = sharedNames;
+    }
+
 
     private void initIndexMaps() {
         if (masterAnnotations == null)
@@ -312,7 +403,7 @@ public final class Indexer {
             users = new HashMap<DotName, List<ClassInfo>>();
 
         if (names == null)
-            names = new NameTable();
+            names = new NameTable(sharedNames);
 
         if (signatureParser == null) {
             signatureParser = new GenericSignatureParser(names);
@@ -320,23 +411,34 @@ public final class Indexer {
     }
 
     private void initClassFields() {
-        elementAnnotations = new ArrayList<AnnotationInstance>();
-        signaturePresent = new IdentityHashMap<AnnotationTarget, Object>();
-        signatures = new ArrayList<Object>();
         classSignatureIndex = -1;
-        typeAnnotations = new IdentityHashMap<AnnotationTarget, List<TypeAnnotationState>>();
+        modulePackages = null;
+        moduleMainClass = null;
+    }
+
+    private void clearClassFields() {
+        constantPool = null;
+        constantPoolOffsets = null;
+        constantPoolAnnoAttrributes = null;
+        currentClass = null;
+        classAnnotations = null;
+        innerClasses = null;
+        classSignatureIndex = -1;
 
+        elementAnnotations.clear();
+        signaturePresent.clear();
+        signatures.clear();
+        typeAnnotations.clear();
+        methods.clear();
+        fields.clear();
         // in bytecode, record components are stored as class attributes,
         // and if the attribute is missing, processRecordComponents isn't called at all
-        recordComponents = new ArrayList<RecordComponentInfo>();
-
-        modulePackages = null;
-        moduleMainClass = null;
+        recordComponents.clear();
     }
 
     private void processMethodInfo(DataInputStream data) throws IOException {
         int numMethods = data.readUnsignedShort();
-        List<MethodInfo> methods = numMethods > 0 ? new ArrayList<MethodInfo>(numMethods) : Collections.<MethodInfo>emptyList();
+        List<MethodInfo> methods = this.methods;
 
         for (int i = 0; i < numMethods; i++) {
             short flags = (short) data.readUnsignedShort();
@@ -365,13 +467,11 @@ public final class Indexer {
 
             methods.add(method);
         }
-
-        this.methods = methods;
     }
 
     private void processFieldInfo(DataInputStream data) throws IOException {
         int numFields = data.readUnsignedShort();
-        List<FieldInfo> fields = numFields > 0 ? new ArrayList<FieldInfo>(numFields) : Collections.<FieldInfo>emptyList();
+        List<FieldInfo> fields = this.fields;
         for (int i = 0; i < numFields; i++) {
             short flags = (short) data.readUnsignedShort();
             byte[] name = intern(decodeUtf8EntryAsBytes(data.readUnsignedShort()));
@@ -383,12 +483,11 @@ public final class Indexer {
             elementAnnotations.clear();
             fields.add(field);
         }
-        this.fields = fields;
     }
 
     private void processRecordComponents(DataInputStream data) throws IOException {
         int numComponents = data.readUnsignedShort();
-        List<RecordComponentInfo> recordComponents = numComponents > 0 ? new ArrayList<RecordComponentInfo>(numComponents) : Collections.<RecordComponentInfo>emptyList();
+        List<RecordComponentInfo> recordComponents = this.recordComponents;
         for (int i = 0; i < numComponents; i++) {
             byte[] name = intern(decodeUtf8EntryAsBytes(data.readUnsignedShort()));
             Type type = intern(parseType(decodeUtf8Entry(data.readUnsignedShort())));
@@ -399,7 +498,6 @@ public final class Indexer {
             elementAnnotations.clear();
             recordComponents.add(component);
         }
-        this.recordComponents = recordComponents;
     }
 
     private void processAttributes(DataInputStream data, AnnotationTarget target) throws IOException {
@@ -799,9 +897,7 @@ public final class Indexer {
 
         if (typeTarget == null) {
             skipTargetPath(data);
-            // eat
-            // TODO - introduce an allocation free annotation skip
-            processAnnotation(data, null);
+            skipAnnotation(data);
             return null;
         }
 
@@ -815,6 +911,9 @@ public final class Indexer {
 
         ArrayList<PathElement> pathElements = processTargetPath(data, genericsRequired, bridgeIncompatible);
         AnnotationInstance annotation = processAnnotation(data, typeTarget);
+        if (annotation == null) {
+            return null;
+        }
         return new TypeAnnotationState(typeTarget, annotation, pathElements, genericsRequired.bool, bridgeIncompatible.bool);
     }
 
@@ -833,10 +932,11 @@ public final class Indexer {
         byte[] pool = constantPool;
         int[] offsets = constantPoolOffsets;
 
-        for (int offset : offsets) {
+        for (int i = 0; i < constantPoolCount; i++) {
+            int offset = offsets[i];
             if (pool[offset] == CONSTANT_CLASS) {
                 int nameIndex = (pool[++offset] & 0xFF) << 8 | (pool[++offset] & 0xFF);
-                DotName usedClass = names.convertToName(decodeUtf8Entry(nameIndex), '/');
+                DotName usedClass = decodeInternalName(nameIndex);
                 List<ClassInfo> usersOfClass = users.get(usedClass);
                 if (usersOfClass == null) {
                     usersOfClass = new ArrayList<ClassInfo>();
@@ -847,6 +947,30 @@ public final class Indexer {
         }
     }
 
+    private static <T extends AnnotationTarget> List<T> annotatedOnly(List<T> members) {
+        List<T> annotated = null;
+        for (T member : members) {
+            if (!annotations(member).isEmpty()) {
+                if (annotated == null) {
+                    annotated = new ArrayList<T>();
+                }
+                annotated.add(member);
+            }
+        }
+        return annotated == null ? Collections.<T>emptyList() : annotated;
+    }
+
+    private static List<AnnotationInstance> annotations(AnnotationTarget member) {
+        switch (member.kind()) {
+            case FIELD:
+                return member.asField().annotations();
+            case METHOD:
+                return member.asMethod().annotations();
+            default:
+                return member.asRecordComponent().annotations();
+        }
+    }
+
     private void updateTypeTargets() {
         for (Map.Entry<AnnotationTarget, List<TypeAnnotationState>> entry : typeAnnotations.entrySet()) {
             AnnotationTarget key = entry.getKey();
@@ -1458,7 +1582,13 @@ public final class Indexer {
     }
 
     private AnnotationInstance processAnnotation(DataInputStream data, AnnotationTarget target) throws IOException {
-        String annotation = convertClassFieldDescriptor(decodeUtf8Entry(data.readUnsignedShort()));
+        int typeIndex = data.readUnsignedShort();
+        if (target != null && annotationFilter != null && !isRecordedAnnotation(typeIndex)) {
+            skipElementValuePairs(data);
+            return null;
+        }
+
+        String annotation = convertClassFieldDescriptor(decodeUtf8Entry(typeIndex));
         int valuePairs = data.readUnsignedShort();
 
         AnnotationValue[] values = new AnnotationValue[valuePairs];
@@ -1521,6 +1651,61 @@ public final class Indexer {
         return names.intern(type);
     }
 
+    private boolean isRecordedAnnotation(int typeIndex) {
+        byte[] pool = constantPool;
+        int pos = constantPoolOffsets[typeIndex - 1];
+        if (pool[pos] != CONSTANT_UTF8)
+            throw new IllegalStateException("Constant pool entry is not a utf8 info type: " + typeIndex + ":" + pos);
+
+        int len = (pool[++pos] & 0xFF) << 8 | (pool[++pos] & 0xFF);
+        return annotationFilter.matches(pool, ++pos, len);
+    }
+
+    private void skipAnnotation(DataInputStream data) throws IOException {
+        skipFully(data, 2);
+        skipElementValuePairs(data);
+    }
+
+    private void skipElementValuePairs(DataInputStream data) throws IOException {
+        int valuePairs = data.readUnsignedShort();
+        for (int v = 0; v < valuePairs; v++) {
+            skipFully(data, 2);
+            skipElementValue(data);
+        }
+    }
+
+    private void skipElementValue(DataInputStream data) throws IOException {
+        int tag = data.readUnsignedByte();
+        switch (tag) {
+            case 'B':
+            case 'C':
+            case 'I':
+            case 'S':
+            case 'Z':
+            case 'F':
+            case 'D':
+            case 'J':
+            case 's':
+            case 'c':
+                skipFully(data, 2);
+                break;
+            case 'e':
+                skipFully(data, 4);
+                break;
+            case '@':
+                skipAnnotation(data);
+                break;
+            case '[': {
+                int numValues = data.readUnsignedShort();
+                for (int i = 0; i < numValues; i++)
+                    skipElementValue(data);
+                break;
+            }
+            default:
+                throw new IllegalStateException("Invalid tag value: " + tag);
+        }
+    }
+
     private AnnotationValue processAnnotationElementValue(String name, DataInputStream data) throws IOException {
         int tag = data.readUnsignedByte();
         switch (tag) {
@@ -1656,7 +1841,28 @@ public final class Indexer {
         }
 
         int nameIndex = (pool[++pos] & 0xFF) << 8 | (pool[++pos] & 0xFF);
-        return names.convertToName(decodeUtf8Entry(nameIndex), delim);
+        return delim == '/' ? decodeInternalName(nameIndex) : names.convertToName(decodeUtf8Entry(nameIndex), delim);
+    }
+
+    /**
+     * Converts a '/' delimited name stored in the passed utf8 entry. Names already seen by this
+     * indexer are found by their encoded bytes, so that only new names are decoded to a String.
+     */
+    private DotName decodeInternalName(int index) throws IOException {
+        byte[] pool = constantPool;
+        int[] offsets = constantPoolOffsets;
+
+        int pos = offsets[index - 1];
+        if (pool[pos] != CONSTANT_UTF8)
+            throw new IllegalStateException("Constant pool entry is not a utf8 info type: " + index + ":" + pos);
+
+        int len = (pool[++pos] & 0xFF) << 8 | (pool[++pos] & 0xFF);
+        DotName name = names.lookupName(pool, ++pos, len);
+        if (name == null) {
+            name = names.convertToName(decodeUtf8Entry(index), '/');
+            names.storeName(pool, pos, len, name);
+        }
+        return name;
     }
 
     private String decodeOptionalUtf8Entry(int index) throws IOException {
@@ -1673,9 +1879,19 @@ public final class Indexer {
 
         pos++;
 
-        // DataInputStream needs to read the length again
+        // Most entries are plain ASCII, which decodes one char per byte
         int len = (pool[pos] & 0xFF) << 8 | (pool[pos + 1] & 0xFF);
-        return new DataInputStream(new ByteArrayInputStream(pool, pos, len + 2)).readUTF();
+        int start = pos + 2;
+        char[] chars = new char[len];
+        for (int i = 0; i < len; i++) {
+            byte b = pool[start + i];
+            if (b <= 0) {
+                // DataInputStream needs to read the length again
+                return new DataInputStream(new ByteArrayInputStream(pool, pos, len + 2)).readUTF();
+            }
+            chars[i] = (char) b;
+        }
+        return new String(chars);
     }
 
     private byte[] decodeUtf8EntryAsBytes(int index) {
@@ -1833,15 +2049,37 @@ public final class Indexer {
         }
     }
 
-    private boolean processConstantPool(DataInputStream stream) throws IOException {
-        int poolCount = stream.readUnsignedShort() - 1;
-        byte[] buf = new byte[20 * poolCount]; // Guess
-        byte[] annoAttributes = new byte[poolCount];
-        int[] offsets = new int[poolCount];
+    /**
+     * Processes a constant pool in place, for class file data that is already held in an array. The
+     * entries of the constant pool are laid out exactly as in the class file, so the array becomes the
+     * constant pool and only the entry offsets are computed.
+     *
+     * @param data the class file data
+     * @param start the offset of the constant pool count
+     * @param end the end of the class file data
+     * @return the offset of the first byte after the constant pool
+     */
+    private int processConstantPool(byte[] data, int start, int end) throws IOException {
+        if (start + 2 > end)
+            throw new EOFException();
+
+        int poolCount = ((data[start] & 0xFF) << 8 | (data[start + 1] & 0xFF)) - 1;
+        if (offsetBuffer.length < poolCount) {
+            offsetBuffer = new int[poolCount];
+            attributeBuffer = new byte[poolCount];
+        }
+        int[] offsets = offsetBuffer;
+        byte[] annoAttributes = attributeBuffer;
+        Arrays.fill(annoAttributes, 0, poolCount, (byte) 0);
         boolean hasAnnotations = false;
+        boolean mentionsAnnotation = false;
 
-        for (int pos = 0, offset = 0; pos < poolCount; pos++) {
-            int tag = stream.readUnsignedByte();
+        int offset = start + 2;
+        for (int pos = 0; pos < poolCount; pos++) {
+            if (offset >= end)
+                throw new EOFException();
+
+            int tag = data[offset] & 0xFF;
             offsets[pos] = offset;
             switch (tag) {
                 case CONSTANT_CLASS:
@@ -1849,10 +2087,7 @@ public final class Indexer {
                 case CONSTANT_METHODTYPE:
                 case CONSTANT_MODULE:
                 case CONSTANT_PACKAGE:
-                    buf = sizeToFit(buf, 3, offset, poolCount - pos);
-                    buf[offset++] = (byte) tag;
-                    stream.readFully(buf, offset, 2);
-                    offset += 2;
+                    offset += 3;
                     break;
                 case CONSTANT_FIELDREF:
                 case CONSTANT_METHODREF:
@@ -1862,66 +2097,29 @@ public final class Indexer {
                 case CONSTANT_DYNAMIC:
                 case CONSTANT_FLOAT:
                 case CONSTANT_NAMEANDTYPE:
-                    buf = sizeToFit(buf, 5, offset, poolCount - pos);
-                    buf[offset++] = (byte) tag;
-                    stream.readFully(buf, offset, 4);
-                    offset += 4;
+                    offset += 5;
                     break;
                 case CONSTANT_LONG:
                 case CONSTANT_DOUBLE:
-                    buf = sizeToFit(buf, 9, offset, poolCount - pos);
-                    buf[offset++] = (byte) tag;
-                    stream.readFully(buf, offset, 8);
-                    offset += 8;
-                    pos++; // 8 byte constant pool entries take two "virtual" slots for some reason
+                    offset += 9;
+                    // 8 byte constant pool entries take two "virtual" slots for some reason,
+                    // the unusable second slot refers to the same entry
+                    if (++pos < poolCount)
+                        offsets[pos] = offsets[pos - 1];
                     break;
                 case CONSTANT_METHODHANDLE:
-                    buf = sizeToFit(buf, 4, offset, poolCount - pos);
-                    buf[offset++] = (byte) tag;
-                    stream.readFully(buf, offset, 3);
-                    offset += 3;
+                    offset += 4;
                     break;
                 case CONSTANT_UTF8:
-                    int len = stream.readUnsignedShort();
-                    buf = sizeToFit(buf, len + 3, offset, poolCount - pos);
-                    buf[offset++] = (byte) tag;
-                    buf[offset++] = (byte) (len >>> 8);
-                    buf[offset++] = (byte) len;
-
-                    stream.readFully(buf, offset, len);
-                    if (len == RUNTIME_ANNOTATIONS_LEN && match(buf, offset, RUNTIME_ANNOTATIONS)) {
-                        annoAttributes[pos] = HAS_RUNTIME_ANNOTATION;
-                        hasAnnotations = true;
-                    } else if (len == RUNTIME_PARAM_ANNOTATIONS_LEN && match(buf, offset, RUNTIME_PARAM_ANNOTATIONS)) {
-                        annoAttributes[pos] = HAS_RUNTIME_PARAM_ANNOTATION;
-                        hasAnnotations = true;
-                    } else if (len == RUNTIME_TYPE_ANNOTATIONS_LEN && match(buf, offset, RUNTIME_TYPE_ANNOTATIONS)) {
-                        annoAttributes[pos] = HAS_RUNTIME_TYPE_ANNOTATION;
-                    } else if (len == SIGNATURE_LEN && match(buf, offset, SIGNATURE)) {
-                        annoAttributes[pos] = HAS_SIGNATURE;
-                    } else if (len == EXCEPTIONS_LEN && match(buf, offset, EXCEPTIONS)) {
-                        annoAttributes[pos] = HAS_EXCEPTIONS;
-                    } else if (len == INNER_CLASSES_LEN && match(buf, offset, INNER_CLASSES)) {
-                        annoAttributes[pos] = HAS_INNER_CLASSES;
-                    } else if (len == ENCLOSING_METHOD_LEN && match(buf, offset, ENCLOSING_METHOD)) {
-                        annoAttributes[pos] = HAS_ENCLOSING_METHOD;
-                    } else if (len == ANNOTATION_DEFAULT_LEN && match(buf, offset, ANNOTATION_DEFAULT)) {
-                        annoAttributes[pos] = HAS_ANNOTATION_DEFAULT;
-                    } else if (len == METHOD_PARAMETERS_LEN && match(buf, offset, METHOD_PARAMETERS)) {
-                        annoAttributes[pos] = HAS_METHOD_PARAMETERS;
-                    } else if (len == LOCAL_VARIABLE_TABLE_LEN && match(buf, offset, LOCAL_VARIABLE_TABLE)) {
-                        annoAttributes[pos] = HAS_LOCAL_VARIABLE_TABLE;
-                    } else if (len == CODE_LEN && match(buf, offset, CODE)) {
-                        annoAttributes[pos] = HAS_CODE;
-                    } else if (len == MODULE_LEN && match(buf, offset, MODULE)) {
-                        annoAttributes[pos] = HAS_MODULE;
-                    } else if (len == MODULE_PACKAGES_LEN && match(buf, offset, MODULE_PACKAGES)) {
-                        annoAttributes[pos] = HAS_MODULE_PACKAGES;
-                    } else if (len == MODULE_MAIN_CLASS_LEN && match(buf, offset, MODULE_MAIN_CLASS)) {
-                        annoAttributes[pos] = HAS_MODULE_MAIN_CLASS;
-                    } else if (len == RECORD_LEN && match(buf, offset, RECORD)) {
-                        annoAttributes[pos] = HAS_RECORD;
-                    }
+                    if (offset + 3 > end)
+                        throw new EOFException();
+                    int len = (data[offset + 1] & 0xFF) << 8 | (data[offset + 2] & 0xFF);
+                    offset += 3;
+                    if (offset + len > end)
+                        throw new EOFException();
+                    annoAttributes[pos] = classifyAttribute(data, offset, len);
+                    hasAnnotations |= isAnnotationAttribute(annoAttributes[pos]);
+                    mentionsAnnotation = mentionsAnnotation || annotationFilter != null && annotationFilter.matches(data, offset, len);
                     offset += len;
                     break;
                default:
@@ -1930,11 +2128,75 @@ public final class Indexer {
             }
         }
 
-        constantPool = buf;
+        if (offset > end)
+            throw new EOFException();
+
+        constantPool = data;
         constantPoolOffsets = offsets;
         constantPoolAnnoAttrributes = annoAttributes;
+        constantPoolCount = poolCount;
+        constantPoolHasAnnotations = hasAnnotations && (mentionsAnnotation || annotationFilter == null);
+        if (hasAnnotations && !constantPoolHasAnnotations) {
+            ignoreAnnotationAttributes(annoAttributes, poolCount);
+        }
+
+        return offset;
+    }
+
+    /**
+     * Unmarks the annotation attributes, when the constant pool shows that none of the annotations of
+     * the class are recorded. They are then skipped like any other unknown attribute.
+     */
+    private static void ignoreAnnotationAttributes(byte[] annoAttributes, int poolCount) {
+        for (int i = 0; i < poolCount; i++) {
+            if (isAnnotationAttribute(annoAttributes[i])) {
+                annoAttributes[i] = 0;
+            }
+        }
+    }
 
-        return hasAnnotations;
+    private static boolean isAnnotationAttribute(byte kind) {
+        return kind == HAS_RUNTIME_ANNOTATION || kind == HAS_RUNTIME_PARAM_ANNOTATION || kind == HAS_RUNTIME_TYPE_ANNOTATION;
+    }
+
+    private byte classifyAttribute(byte[] buf, int offset, int len) {
+        byte kind = attributeKind(buf, offset, len);
+        return skippedAttributes[kind] ? 0 : kind;
+    }
+
+    private static byte attributeKind(byte[] buf, int offset, int len) {
+        if (len == RUNTIME_ANNOTATIONS_LEN && match(buf, offset, RUNTIME_ANNOTATIONS)) {
+            return HAS_RUNTIME_ANNOTATION;
+        } else if (len == RUNTIME_PARAM_ANNOTATIONS_LEN && match(buf, offset, RUNTIME_PARAM_ANNOTATIONS)) {
+            return HAS_RUNTIME_PARAM_ANNOTATION;
+        } else if (len == RUNTIME_TYPE_ANNOTATIONS_LEN && match(buf, offset, RUNTIME_TYPE_ANNOTATIONS)) {
+            return HAS_RUNTIME_TYPE_ANNOTATION;
+        } else if (len == SIGNATURE_LEN && match(buf, offset, SIGNATURE)) {
+            return HAS_SIGNATURE;
+        } else if (len == EXCEPTIONS_LEN && match(buf, offset, EXCEPTIONS)) {
+            return HAS_EXCEPTIONS;
+        } else if (len == INNER_CLASSES_LEN && match(buf, offset, INNER_CLASSES)) {
+            return HAS_INNER_CLASSES;
+        } else if (len == ENCLOSING_METHOD_LEN && match(buf, offset, ENCLOSING_METHOD)) {
+            return HAS_ENCLOSING_METHOD;
+        } else if (len == ANNOTATION_DEFAULT_LEN && match(buf, offset, ANNOTATION_DEFAULT)) {
+            return HAS_ANNOTATION_DEFAULT;
+        } else if (len == METHOD_PARAMETERS_LEN && match(buf, offset, METHOD_PARAMETERS)) {
+            return HAS_METHOD_PARAMETERS;
+        } else if (len == LOCAL_VARIABLE_TABLE_LEN && match(buf, offset, LOCAL_VARIABLE_TABLE)) {
+            return HAS_LOCAL_VARIABLE_TABLE;
+        } else if (len == CODE_LEN && match(buf, offset, CODE)) {
+            return HAS_CODE;
+        } else if (len == MODULE_LEN && match(buf, offset, MODULE)) {
+            return HAS_MODULE;
+        } else if (len == MODULE_PACKAGES_LEN && match(buf, offset, MODULE_PACKAGES)) {
+            return HAS_MODULE_PACKAGES;
+        } else if (len == MODULE_MAIN_CLASS_LEN && match(buf, offset, MODULE_MAIN_CLASS)) {
+            return HAS_MODULE_MAIN_CLASS;
+        } else if (len == RECORD_LEN && match(buf, offset, RECORD)) {
+            return HAS_RECORD;
+        }
+        return 0;
     }
 
     /**
@@ -1970,9 +2232,107 @@ public final class Indexer {
         if (stream == null) {
             throw new IllegalArgumentException("stream cannot be null");
         }
+        int length = readClass(stream);
+        try {
+            return index(classBuffer, 0, length);
+        } finally {
+            if (classBuffer.length > MAX_RETAINED_BUFFER) {
+                classBuffer = null;
+            }
+        }
+    }
+
+    /**
+     * Analyze and index the class file data present in the passed array.
+     * Each call adds information to the final complete index; however, to aid in
+     * processing a per-class index (ClassInfo) is returned on each call.
+     *
+     * <p>The class file data is parsed directly from the array without copying, so it
+     * must not be modified while this method runs. The array is not retained afterwards.</p>
+     *
+     * @param classData the complete class file data
+     * @return a class index containing all annotations on the passed class data
+     * @throws IOException if the class file data is corrupt
+     * @throws IllegalArgumentException if classData is null
+     */
+    public ClassInfo index(byte[] classData) throws IOException {
+        if (classData == null) {
+            throw new IllegalArgumentException("classData cannot be null");
+        }
+        return index(classData, 0, classData.length);
+    }
+
+    /**
+     * Analyze and index the class file data between the position and the limit of the
+     * passed buffer. The position of the buffer is not changed.
+     * Each call adds information to the final complete index; however, to aid in
+     * processing a per-class index (ClassInfo) is returned on each call.
+     *
+     * <p>Buffers backed by an accessible array are parsed in place; the content of other
+     * buffers, such as direct buffers, is copied once.</p>
+     *
+     * @param classData a buffer containing the complete class file data
+     * @return a class index containing all annotations on the passed class data
+     * @throws IOException if the class file data is corrupt
+     * @throws IllegalArgumentException if classData is null
+     */
+    public ClassInfo index(ByteBuffer classData) throws IOException {
+        if (classData == null) {
+            throw new IllegalArgumentException("classData cannot be null");
+        }
+        if (classData.hasArray()) {
+            return index(classData.array(), classData.arrayOffset() + classData.position(), classData.remaining());
+        }
+        int length = classData.remaining();
+        classData.duplicate().get(classBuffer(length), 0, length);
+        try {
+            return index(classBuffer, 0, length);
+        } finally {
+            if (classBuffer.length > MAX_RETAINED_BUFFER) {
+                classBuffer = null;
+            }
+        }
+    }
+
+    /**
+     * Returns the recycled class buffer, after making sure it holds at least the passed
+     * number of bytes.
+     */
+    private byte[] classBuffer(int capacity) {
+        byte[] buf = classBuffer;
+        if (buf == null || buf.length < capacity) {
+            buf = classBuffer = new byte[Math.max(capacity, INITIAL_BUFFER)];
+        }
+        return buf;
+    }
+
+    /**
+     * Reads the passed stream into the recycled class buffer, growing the buffer as needed.
+     *
+     * @return the number of bytes read
+     */
+    private int readClass(InputStream stream) throws IOException {
+        byte[] buf = classBuffer(INITIAL_BUFFER);
+        int length = 0;
+        int read;
+        while ((read = stream.read(buf, length, buf.length - length)) >= 0) {
+            length += read;
+            if (length == buf.length) {
+                buf = classBuffer = Arrays.copyOf(buf, length << 1);
+            }
+        }
+        return length;
+    }
+
+    /**
+     * Indexes the class file data held in the passed array range. The constant pool is used in place,
+     * and the rest of the class file is read through the recycled class stream.
+     */
+    private ClassInfo index(byte[] classData, int offset, int length) throws IOException {
+        DataInputStream data = classDataInput;
+        classStream.setData(classData, offset, length);
         try
         {
-            DataInputStream data = new DataInputStream(new BufferedInputStream(stream));
             verifyMagic(data);
 
             // Retroweaved classes may contain annotations
@@ -1983,8 +2343,13 @@ public final class Indexer {
             initIndexMaps();
             initClassFields();
 
-            processConstantPool(data);
+            // magic and version have been read
+            int poolStart = offset + 8;
+            skipFully(data, processConstantPool(classData, poolStart, offset + length) - poolStart);
             processClassInfo(data);
+            if (skipUnannotatedClasses && !constantPoolHasAnnotations && !currentClass.isModule()) {
+                return completeUnannotatedClass();
+            }
             processFieldInfo(data);
             processMethodInfo(data);
             processAttributes(data, currentClass);
@@ -1992,11 +2357,19 @@ public final class Indexer {
             applySignatures();
             resolveTypeAnnotations();
             updateTypeTargets();
-            resolveUsers();
+            if (recordUsers) {
+                resolveUsers();
+            }
 
-            currentClass.setMethods(methods, names);
-            currentClass.setFields(fields, names);
-            currentClass.setRecordComponents(recordComponents, names);
+            if (storeAllMembers) {
+                currentClass.setMethods(methods, names);
+                currentClass.setFields(fields, names);
+                currentClass.setRecordComponents(recordComponents, names);
+            } else {
+                currentClass.setMethods(annotatedOnly(methods), names);
+                currentClass.setFields(annotatedOnly(fields), names);
+                currentClass.setRecordComponents(annotatedOnly(recordComponents), names);
+            }
             currentClass.setAnnotations(classAnnotations);
             if (currentClass.isModule() && currentClass.module() != null) {
                 if (modulePackages != null) {
@@ -2007,19 +2380,25 @@ public final class Indexer {
 
             return currentClass;
         } finally {
-            constantPool = null;
-            constantPoolOffsets = null;
-            constantPoolAnnoAttrributes = null;
-            currentClass = null;
-            classAnnotations = null;
-            elementAnnotations = null;
-            innerClasses = null;
-            signatures = null;
-            classSignatureIndex = -1;
-            signaturePresent = null;
+            clearClassFields();
+            classStream.release();
         }
     }
 
+    /**
+     * Finishes a class without any annotation attributes once its hierarchy has been recorded,
+     * without reading the rest of the class file.
+     */
+    private ClassInfo completeUnannotatedClass() throws IOException {
+        if (recordUsers) {
+            resolveUsers();
+        }
+
+        currentClass.setRecordComponents(Collections.<RecordComponentInfo>emptyList(), names);
+        currentClass.setAnnotations(classAnnotations);
+        return currentClass;
+    }
+
     /**
      * Completes, finalizes, and returns the index after zero or more calls to
      * index. Future calls to index will result in a new index.
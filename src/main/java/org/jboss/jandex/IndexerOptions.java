@@ -0,0 +1,254 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2021 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.jandex;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Selects which parts of the class file an {@link Indexer} processes. By default every part
+ * is processed, which results in the complete index. Tools which only ask for annotations, for
+ * example to find the classes carrying a particular annotation, can turn off the information
+ * they never look at; the indexer then skips the corresponding class file attributes entirely,
+ * which makes indexing faster and the resulting index considerably smaller.
+ *
+ * <p>Regardless of the options, the indexer always records the class hierarchy and every
+ * runtime visible annotation of the {@linkplain #annotationNames() selected types} together
+ * with its target.</p>
+ *
+ * <p>The options are read when an indexer is constructed, so changing them later does not
+ * affect indexers which have already been created.</p>
+ *
+ * <p><b>Thread-Safety</b></p>
+ * This class is not thread-safe.
+ *
+ */
+public final class IndexerOptions {
+    private boolean genericSignatures = true;
+    private boolean typeAnnotations = true;
+    private boolean parameterNames = true;
+    private boolean users = true;
+    private boolean members = true;
+    private boolean skipUnannotatedClasses;
+    private Set<DotName> annotationNames;
+
+    /**
+     * Constructs options which process the complete class file information.
+     */
+    public IndexerOptions() {
+    }
+
+    IndexerOptions(IndexerOptions other) {
+        this.genericSignatures = other.genericSignatures;
+        this.typeAnnotations = other.typeAnnotations;
+        this.parameterNames = other.parameterNames;
+        this.users = other.users;
+        this.members = other.members;
+        this.skipUnannotatedClasses = other.skipUnannotatedClasses;
+        this.annotationNames = other.annotationNames;
+    }
+
+    /**
+     * Constructs options suited to annotation scanning: generic signatures, type annotations,
+     * parameter names and class users are skipped, only annotated members are stored, and
+     * classes without annotations are only recorded in the class hierarchy.
+     *
+     * @return a new options instance for annotation-only scanning
+     */
+    public static IndexerOptions annotationsOnly() {
+        return new IndexerOptions()
+                .setGenericSignatures(false)
+                .setTypeAnnotations(false)
+                .setParameterNames(false)
+                .setUsers(false)
+                .setMembers(false)
+                .setSkipUnannotatedClasses(true);
+    }
+
+    /**
+     * Returns whether generic signatures are parsed. If not, the types of classes, fields,
+     * methods and record components are the erased types of their descriptors, and no
+     * type parameters are recorded.
+     *
+     * @return true if generic signatures are parsed
+     */
+    public boolean genericSignatures() {
+        return genericSignatures;
+    }
+
+    /**
+     * Sets whether generic signatures are parsed. Type annotations are only processed
+     * together with generic signatures, since their type paths refer to the generic types.
+     *
+     * @param genericSignatures true to parse generic signatures
+     * @return this options instance
+     */
+    public IndexerOptions setGenericSignatures(boolean genericSignatures) {
+        this.genericSignatures = genericSignatures;
+        return this;
+    }
+
+    /**
+     * Returns whether type annotations are processed.
+     *
+     * @return true if type annotations are processed
+     */
+    public boolean typeAnnotations() {
+        return typeAnnotations;
+    }
+
+    /**
+     * Sets whether type annotations are processed. This has no effect if generic
+     * signatures are not parsed.
+     *
+     * @param typeAnnotations true to process type annotations
+     * @return this options instance
+     */
+    public IndexerOptions setTypeAnnotations(boolean typeAnnotations) {
+        this.typeAnnotations = typeAnnotations;
+        return this;
+    }
+
+    /**
+     * Returns whether method parameter names are read from the {@code MethodParameters}
+     * attribute and the debug information of method bodies.
+     *
+     * @return true if parameter names are read
+     */
+    public boolean parameterNames() {
+        return parameterNames;
+    }
+
+    /**
+     * Sets whether method parameter names are read. If not, method bodies are skipped entirely.
+     *
+     * @param parameterNames true to read parameter names
+     * @return this options instance
+     */
+    public IndexerOptions setParameterNames(boolean parameterNames) {
+        this.parameterNames = parameterNames;
+        return this;
+    }
+
+    /**
+     * Returns whether the classes referenced from the constant pool of each indexed class
+     * are recorded, as returned by {@link IndexView#getKnownUsers(DotName)}.
+     *
+     * @return true if users are recorded
+     */
+    public boolean users() {
+        return users;
+    }
+
+    /**
+     * Sets whether the users of classes are recorded.
+     *
+     * @param users true to record users
+     * @return this options instance
+     */
+    public IndexerOptions setUsers(boolean users) {
+        this.users = users;
+        return this;
+    }
+
+    /**
+     * Returns whether all fields, methods and record components are stored in their
+     * declaring {@link ClassInfo}. If not, only members which carry annotations are stored,
+     * so that every annotation target remains part of the index.
+     *
+     * @return true if all members are stored
+     */
+    public boolean members() {
+        return members;
+    }
+
+    /**
+     * Sets whether all fields, methods and record components are stored, or only those
+     * which carry annotations.
+     *
+     * @param members true to store all members
+     * @return this options instance
+     */
+    public IndexerOptions setMembers(boolean members) {
+        this.members = members;
+        return this;
+    }
+
+    /**
+     * Returns whether classes without any runtime visible annotations are only recorded in
+     * the class hierarchy. Such classes are detected from their constant pool, and the rest
+     * of their class file is not read: they are known to the index and to the subclass and
+     * implementor queries, but have no members, type parameters or nesting information.
+     * Their users are still recorded if {@link #users()} is enabled. Module descriptors are
+     * always processed completely.
+     *
+     * @return true if the structure of unannotated classes is skipped
+     */
+    public boolean skipUnannotatedClasses() {
+        return skipUnannotatedClasses;
+    }
+
+    /**
+     * Sets whether classes without any runtime visible annotations are only recorded
+     * in the class hierarchy. This is disabled by default.
+     *
+     * @param skipUnannotatedClasses true to skip the structure of unannotated classes
+     * @return this options instance
+     */
+    public IndexerOptions setSkipUnannotatedClasses(boolean skipUnannotatedClasses) {
+        this.skipUnannotatedClasses = skipUnannotatedClasses;
+        return this;
+    }
+
+    /**
+     * Returns the annotation types whose instances are recorded, or null if all annotations
+     * are recorded.
+     *
+     * @return the unmodifiable set of recorded annotation types, or null for all types
+     */
+    public Set<DotName> annotationNames() {
+        return annotationNames;
+    }
+
+    /**
+     * Restricts the recorded annotations to instances of the passed annotation types. Instances of
+     * other types are skipped without being decoded, and a class whose constant pool does not
+     * mention any of the types is treated as a class without annotations, see
+     * {@link #setSkipUnannotatedClasses(boolean)}. Annotations nested in the values of recorded
+     * annotations are kept regardless of their type. Note that the containers of repeatable
+     * annotations are separate types, which must be passed as well to record repeated instances.
+     *
+     * @param annotationNames the annotation types to record, or null to record all annotations
+     * @return this options instance
+     * @throws IllegalArgumentException if the collection contains null
+     */
+    public IndexerOptions setAnnotationNames(Collection<DotName> annotationNames) {
+        if (annotationNames == null) {
+            this.annotationNames = null;
+            return this;
+        }
+        Set<DotName> names = new HashSet<DotName>(annotationNames);
+        if (names.contains(null)) {
+            throw new IllegalArgumentException("annotationNames cannot contain null");
+        }
+        this.annotationNames = Collections.unmodifiableSet(names);
+        return this;
+    }
+}
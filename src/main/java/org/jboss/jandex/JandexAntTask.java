@@ -23,6 +23,8 @@ import org.apache.tools.ant.Task;
 import org.apache.tools.ant.types.FileSet;
 
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
@@ -43,6 +45,8 @@ public class JandexAntTask  extends Task {
 
     private boolean run = true;
 
+    private boolean incremental = false;
+
     @Override
     public void execute() throws BuildException {
         if (!run) {
@@ -51,13 +55,21 @@ public class JandexAntTask  extends Task {
         if (modify && newJar) {
             throw new BuildException("Specifying both modify and newJar does not make sense.");
         }
+        if (incremental && (modify || newJar)) {
+            throw new BuildException("Incremental indexing only supports external index files.");
+        }
         Indexer indexer = new Indexer();
         for(FileSet fileset : filesets) {
             String[] files = fileset.getDirectoryScanner(getProject()).getIncludedFiles();
             for(String file : files) {
                 if (file.endsWith(".jar")) {
                     try {
-                        JarIndexer.createJarIndex(new File(fileset.getDir().getAbsolutePath() + "/" +file), indexer, modify, newJar,verbose);
+                        File jarFile = new File(fileset.getDir().getAbsolutePath() + "/" +file);
+                        if (incremental) {
+                            updateJarIndex(jarFile);
+                        } else {
+                            JarIndexer.createJarIndex(jarFile, indexer, modify, newJar,verbose);
+                        }
                     } catch (IOException e) {
                        throw new BuildException(e);
                     }
@@ -67,6 +79,35 @@ public class JandexAntTask  extends Task {
 
     }
 
+    private void updateJarIndex(File jarFile) throws IOException {
+        File indexFile = JarIndexer.getIndexFile(jarFile, false);
+        Index previous = null;
+        if (indexFile.exists()) {
+            FileInputStream in = new FileInputStream(indexFile);
+            try {
+                previous = new IndexReader(in).read();
+            } catch (IOException e) {
+                log("Could not read " + indexFile + ", indexing all classes: " + e.getMessage());
+            } finally {
+                in.close();
+            }
+        }
+
+        IncrementalIndexer indexer = new IncrementalIndexer(previous);
+        Index index = indexer.indexJar(jarFile);
+        if (verbose) {
+            log("Indexed " + indexer.getIndexedCount() + " class files of " + jarFile.getName()
+                    + ", dropped " + indexer.getRemovedCount() + " classes");
+        }
+
+        FileOutputStream out = new FileOutputStream(indexFile);
+        try {
+            new IndexWriter(out).write(index);
+        } finally {
+            out.close();
+        }
+    }
+
     public void addFileset(FileSet fileset) {
         filesets.add(fileset);
     }
@@ -95,6 +136,14 @@ public class JandexAntTask  extends Task {
         this.run = run;
     }
 
+    public boolean isIncremental() {
+        return incremental;
+    }
+
+    public void setIncremental(boolean incremental) {
+        this.incremental = incremental;
+    }
+
     public boolean isNewJar() {
         return newJar;
     }
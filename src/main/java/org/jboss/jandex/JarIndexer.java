@@ -19,6 +19,7 @@
 package org.jboss.jandex;
 
 import java.io.*;
+import java.nio.ByteBuffer;
 import java.util.Enumeration;
 import java.util.jar.JarEntry;
 import java.util.jar.JarFile;
@@ -35,7 +36,7 @@ import java.util.zip.ZipOutputStream;
  */
 public class JarIndexer {
 
-    private static File getIndexFile(File jarFile, boolean newJar) {
+    static File getIndexFile(File jarFile, boolean newJar) {
         final String name = jarFile.getName();
         final int p = name.lastIndexOf(".");
         if (p < 0)
@@ -124,6 +125,56 @@ public class JarIndexer {
      * @throws IOException for any I/o error
      */
     public static Result createJarIndex(File jarFile, Indexer indexer, File outputFile, boolean modify, boolean newJar, boolean verbose, PrintStream infoStream, PrintStream errStream) throws IOException {
+        return createJarIndex(jarFile, indexer, null, outputFile, modify, newJar, verbose, infoStream, errStream);
+    }
+
+    /**
+     * Indexes a jar file using multiple threads and saves the result. If the modify flag is set, index is saved to
+     * META-INF/jandex.idx. Otherwise an external file is created with a similar name to the original file,
+     * concatenating <code>.idx</code> suffix.
+     *
+     * @param jarFile The file to index
+     * @param indexer The parallel indexer to use
+     * @param outputFile The index file to write to
+     * @param modify If the original jar should be modified
+     * @param newJar If the new jar should be created
+     * @param verbose If we should print what we are doing to standard out
+     * @return indexing result
+     * @throws IOException for any I/o error; classes which could not be indexed are reported to the error stream and skipped
+     */
+    public static Result createJarIndex(File jarFile, ParallelIndexer indexer, File outputFile, boolean modify, boolean newJar, boolean verbose) throws IOException {
+        return createJarIndex(jarFile, indexer, outputFile, modify, newJar, verbose, System.out, System.err);
+    }
+
+    /**
+     * Indexes a jar file using multiple threads and saves the result. If the modify flag is set, index is saved to
+     * META-INF/jandex.idx. Otherwise an external file is created with a similar name to the original file,
+     * concatenating <code>.idx</code> suffix.
+     *
+     * @param jarFile The file to index
+     * @param indexer The parallel indexer to use
+     * @param outputFile The index file to write to
+     * @param modify If the original jar should be modified
+     * @param newJar If the new jar should be created
+     * @param verbose If we should print what we are doing to the specified info stream
+     * @param infoStream A print stream which will record verbose info, may be null
+     * @param errStream A print stream to print errors, must not be null
+     *
+     * @return indexing result
+     * @throws IOException for any I/o error; classes which could not be indexed are reported to the error stream and skipped
+     */
+    public static Result createJarIndex(File jarFile, ParallelIndexer indexer, File outputFile, boolean modify, boolean newJar, boolean verbose, PrintStream infoStream, PrintStream errStream) throws IOException {
+        return createJarIndex(jarFile, null, indexer, outputFile, modify, newJar, verbose, infoStream, errStream);
+    }
+
+    private static Result createJarIndex(File jarFile, Indexer indexer, ParallelIndexer parallelIndexer, File outputFile, boolean modify, boolean newJar, boolean verbose, PrintStream infoStream, PrintStream errStream) throws IOException {
+        if (modify) {
+            RawJarCopier copier = RawJarCopier.open(jarFile);
+            if (copier != null) {
+                return updateJarIndex(jarFile, copier, indexer, parallelIndexer, verbose, infoStream, errStream);
+            }
+        }
+
         File tmpCopy = null;
         ZipOutputStream zo = null;
         OutputStream out;
@@ -165,7 +216,7 @@ public class JarIndexer {
                     }
                 }
 
-                if (entry.getName().endsWith(".class")) {
+                if (parallelIndexer == null && entry.getName().endsWith(".class")) {
                     try {
                         final InputStream stream = jar.getInputStream(entry);
                         ClassInfo info;
@@ -188,8 +239,15 @@ public class JarIndexer {
                 zo.putNextEntry(new ZipEntry("META-INF/jandex.idx"));
             }
 
+            Index index;
+            if (parallelIndexer != null) {
+                parallelIndexer.addJar(jarFile);
+                index = parallelIndexer.complete(verbose, infoStream, errStream);
+            } else {
+                index = indexer.complete();
+            }
+
             IndexWriter writer = new IndexWriter(out);
-            Index index = indexer.complete();
             int bytes = writer.write(index);
 
             out.close();
@@ -211,6 +269,65 @@ public class JarIndexer {
         }
     }
 
+    /**
+     * Adds the index to a jar file without recompressing its entries, indexing the class files
+     * while they are copied.
+     */
+    private static Result updateJarIndex(File jarFile, RawJarCopier copier, final Indexer indexer, ParallelIndexer parallelIndexer, final boolean verbose, final PrintStream infoStream, final PrintStream errStream) throws IOException {
+        File tmpCopy = File.createTempFile(jarFile.getName().substring(0, jarFile.getName().lastIndexOf('.')) + "00", "jmp");
+        FileOutputStream out = null;
+
+        try {
+            out = new FileOutputStream(tmpCopy);
+            RawJarCopier.ClassHandler handler = null;
+            if (parallelIndexer == null) {
+                handler = new RawJarCopier.ClassHandler() {
+                    public void handleClass(String name, ByteBuffer classData) {
+                        try {
+                            ClassInfo info = indexer.index(classData);
+                            if (verbose && info != null && infoStream != null)
+                                printIndexEntryInfo(info, infoStream);
+                        } catch (Exception e) {
+                            String message = e.getMessage() == null ? e.getClass().getSimpleName() : e.getMessage();
+                            errStream.println("ERROR: Could not index " + name + ": " + message); if (verbose)
+                            e.printStackTrace(errStream);
+                        }
+                    }
+                };
+            }
+            copier.copyEntries(out.getChannel(), "META-INF/jandex.idx", handler);
+
+            Index index;
+            if (parallelIndexer != null) {
+                parallelIndexer.addJar(jarFile);
+                index = parallelIndexer.complete(verbose, infoStream, errStream);
+            } else {
+                index = indexer.complete();
+            }
+
+            ByteArrayOutputStream indexData = new ByteArrayOutputStream();
+            int bytes = new IndexWriter(indexData).write(index);
+            copier.finish(out.getChannel(), "META-INF/jandex.idx", indexData.toByteArray());
+
+            out.close();
+            copier.close();
+
+            jarFile.delete();
+            if (!tmpCopy.renameTo(jarFile)) {
+                copy(jarFile, tmpCopy);
+                tmpCopy.delete();
+            }
+            tmpCopy = null;
+            return new Result(index, "META-INF/jandex.idx", bytes, jarFile);
+        } finally {
+            if (out != null)
+                safeClose(out);
+            safeClose(copier);
+            if (tmpCopy != null)
+                tmpCopy.delete();
+        }
+    }
+
     private static void copy(File dest, File source) throws IOException {
         FileInputStream fis = new FileInputStream(source);
         FileOutputStream fos = new FileOutputStream(new File(dest.getAbsolutePath()));
@@ -225,7 +342,7 @@ public class JarIndexer {
         }
     }
 
-    private static void printIndexEntryInfo(ClassInfo info, PrintStream infoStream) {
+    static void printIndexEntryInfo(ClassInfo info, PrintStream infoStream) {
         infoStream.println("Indexed " + info.name() + " (" + info.annotations().size() + " annotations)");
     }
     
@@ -0,0 +1,375 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2021 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jboss.jandex;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * An index which decodes its class entries on first access. Only the shared tables of the index
+ * file (strings, names, types, methods and fields) are read up front. The sorted directory at
+ * the end of the file is binary searched in place to locate the entry of a requested class, or
+ * the entries of the classes holding a requested annotation.
+ *
+ * <p>Lookups by class or annotation name only decode the entries involved. Queries which need
+ * the whole class hierarchy, such as {@link #getAllKnownSubclasses(DotName)}, decode every
+ * remaining class entry once and are answered by a regular {@link Index} from then on.
+ *
+ * <p><b>Thread-Safety</b></p>
+ * This class is thread-safe. Decoding is serialized, since it shares the tables of the
+ * underlying reader.
+ *
+ */
+final class LazyIndex implements IndexView {
+    private final IndexReaderV2 reader;
+    private final ByteBuffer buffer;
+    private final int version;
+    private final int classRecords;
+    private final int annotationRecords;
+    private final int annotationsSize;
+    private final ClassInfo[] classEntries;
+    private final Map<DotName, ModuleInfo> modules;
+    private final Map<DotName, List<AnnotationInstance>> moduleAnnotations;
+    private final Map<DotName, Set<DotName>> users;
+    private final Map<DotName, List<AnnotationInstance>> annotations = new HashMap<DotName, List<AnnotationInstance>>();
+    private final Map<DotName, AnnotationsByKind> annotationsByKind = new HashMap<DotName, AnnotationsByKind>();
+    private final Map<DotName, AnnotationValueIndex> annotationsByValue = new HashMap<DotName, AnnotationValueIndex>();
+    private volatile Index index;
+
+    LazyIndex(IndexReaderV2 reader, ByteBuffer buffer, int version, int directoryOffset, Map<DotName, ModuleInfo> modules,
+              Map<DotName, List<AnnotationInstance>> moduleAnnotations, Map<DotName, Set<DotName>> users) {
+        this.reader = reader;
+        this.buffer = buffer;
+        this.version = version;
+        this.modules = Collections.unmodifiableMap(modules);
+        this.moduleAnnotations = moduleAnnotations;
+        this.users = users;
+
+        int classesSize = buffer.getInt(directoryOffset);
+        classRecords = directoryOffset + 4;
+        classEntries = new ClassInfo[classesSize];
+        // Skip the class records and the modules offset
+        int annotationDirectory = classRecords + 8 * classesSize + 4;
+        annotationsSize = buffer.getInt(annotationDirectory);
+        annotationRecords = annotationDirectory + 4;
+    }
+
+    /**
+     * Binary searches a directory section of fixed size records, whose first
+     * integer is a name position. Returns the slot of the record, or -1.
+     */
+    private int findRecord(int records, int size, DotName name) {
+        int position = reader.positionOf(name);
+        if (position < 0) {
+            return -1;
+        }
+
+        int low = 0;
+        int high = size - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int midPosition = buffer.getInt(records + 8 * mid);
+            if (midPosition < position) {
+                low = mid + 1;
+            } else if (midPosition > position) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    private int classOffset(int slot) {
+        return buffer.getInt(classRecords + 8 * slot + 4);
+    }
+
+    private synchronized ClassInfo classAt(int slot) {
+        ClassInfo clazz = classEntries[slot];
+        if (clazz == null) {
+            try {
+                clazz = classEntries[slot] = reader.readClassAt(buffer, classOffset(slot), version);
+            } catch (IOException e) {
+                throw new IllegalStateException("Corrupt index entry at offset " + classOffset(slot), e);
+            }
+        }
+        return clazz;
+    }
+
+    private Index index() {
+        Index index = this.index;
+        if (index != null) {
+            return index;
+        }
+
+        synchronized (this) {
+            if (this.index == null) {
+                // Restore the order of the class entries, which matches that of a sequential read
+                Integer[] slots = new Integer[classEntries.length];
+                for (int i = 0; i < slots.length; i++) {
+                    slots[i] = i;
+                }
+                Arrays.sort(slots, new Comparator<Integer>() {
+                    public int compare(Integer o1, Integer o2) {
+                        return classOffset(o1) - classOffset(o2);
+                    }
+                });
+
+                ClassInfo[] classes = new ClassInfo[slots.length];
+                for (int i = 0; i < slots.length; i++) {
+                    classes[i] = classAt(slots[i]);
+                }
+                this.index = reader.buildIndex(classes, modules, moduleAnnotations);
+            }
+            return this.index;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public Collection<ClassInfo> getKnownClasses() {
+        return index().getKnownClasses();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public ClassInfo getClassByName(DotName className) {
+        int slot = findRecord(classRecords, classEntries.length, className);
+        return slot < 0 ? null : classAt(slot);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public Collection<ClassInfo> getKnownDirectSubclasses(DotName className) {
+        return index().getKnownDirectSubclasses(className);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public Collection<ClassInfo> getAllKnownSubclasses(DotName className) {
+        return index().getAllKnownSubclasses(className);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public Collection<ClassInfo> getKnownDirectImplementors(DotName className) {
+        return index().getKnownDirectImplementors(className);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public Collection<ClassInfo> getAllKnownImplementors(DotName interfaceName) {
+        return index().getAllKnownImplementors(interfaceName);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public Set<DotName> getMetaAnnotations(DotName annotationName) {
+        return index().getMetaAnnotations(annotationName);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public Collection<AnnotationInstance> getAnnotationsWithMetaAnnotation(DotName metaAnnotationName) {
+        return index().getAnnotationsWithMetaAnnotation(metaAnnotationName);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public Collection<ClassInfo> getClassesInPackage(DotName packageName, boolean recursive) {
+        return index().getClassesInPackage(packageName, recursive);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public Collection<AnnotationInstance> getAnnotations(DotName annotationName) {
+        Index index = this.index;
+        if (index != null) {
+            return index.getAnnotations(annotationName);
+        }
+
+        synchronized (this) {
+            List<AnnotationInstance> instances = annotations.get(annotationName);
+            if (instances == null) {
+                instances = new ArrayList<AnnotationInstance>();
+                int record = findRecord(annotationRecords, annotationsSize, annotationName);
+                if (record >= 0) {
+                    for (int slot : classSlots(record)) {
+                        instances.addAll(classAt(slot).annotations().get(annotationName));
+                    }
+                }
+                List<AnnotationInstance> moduleInstances = moduleAnnotations.get(annotationName);
+                if (moduleInstances != null) {
+                    instances.addAll(moduleInstances);
+                }
+                instances = Collections.unmodifiableList(instances);
+                annotations.put(annotationName, instances);
+            }
+            return instances;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public Collection<AnnotationInstance> getAnnotations(DotName annotationName, AnnotationTarget.Kind kind) {
+        if (kind == null) {
+            throw new IllegalArgumentException("kind cannot be null");
+        }
+
+        Index index = this.index;
+        if (index != null) {
+            return index.getAnnotations(annotationName, kind);
+        }
+
+        Collection<AnnotationInstance> instances = getAnnotations(annotationName);
+        synchronized (this) {
+            AnnotationsByKind buckets = annotationsByKind.get(annotationName);
+            if (buckets == null) {
+                buckets = new AnnotationsByKind(instances);
+                annotationsByKind.put(annotationName, buckets);
+            }
+            return buckets.get(kind);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public Collection<AnnotationInstance> getAnnotationsWithValue(DotName annotationName, AnnotationValue value) {
+        AnnotationValueIndex.checkIndexed(value);
+
+        Index index = this.index;
+        if (index != null) {
+            return index.getAnnotationsWithValue(annotationName, value);
+        }
+
+        Collection<AnnotationInstance> instances = getAnnotations(annotationName);
+        synchronized (this) {
+            AnnotationValueIndex values = annotationsByValue.get(annotationName);
+            if (values == null) {
+                values = new AnnotationValueIndex(instances);
+                annotationsByValue.put(annotationName, values);
+            }
+            return values.get(value);
+        }
+    }
+
+    private int[] classSlots(int record) {
+        int offset = buffer.getInt(annotationRecords + 8 * record + 4);
+        int[] slots;
+        try {
+            slots = IndexReaderV2.readClassSlots(buffer, offset);
+        } catch (IOException e) {
+            throw new IllegalStateException("Corrupt index directory at offset " + offset, e);
+        }
+
+        // Visit the classes in the order of their entries, like a sequential read does
+        long[] entries = new long[slots.length];
+        for (int i = 0; i < slots.length; i++) {
+            entries[i] = (long) classOffset(slots[i]) << 32 | slots[i];
+        }
+        Arrays.sort(entries);
+        for (int i = 0; i < slots.length; i++) {
+            slots[i] = (int) entries[i];
+        }
+        return slots;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public Collection<AnnotationInstance> getAnnotationsWithRepeatable(DotName annotationName, IndexView index) {
+        ClassInfo annotationClass = index.getClassByName(annotationName);
+        if (annotationClass == null) {
+            throw new IllegalArgumentException("Index does not contain the annotation definition: " + annotationName);
+        }
+        if (!annotationClass.isAnnotation()) {
+            throw new IllegalArgumentException("Not an annotation type: " + annotationClass);
+        }
+        AnnotationInstance repeatable = annotationClass.classAnnotation(Index.REPEATABLE);
+        if (repeatable == null) {
+            return getAnnotations(annotationName);
+        }
+
+        DotName containingName = repeatable.value().asClass().name();
+        List<AnnotationInstance> instances = new ArrayList<AnnotationInstance>(getAnnotations(annotationName));
+        for (AnnotationInstance containingInstance : getAnnotations(containingName)) {
+            for (AnnotationInstance nestedInstance : containingInstance.value().asNestedArray()) {
+                // We need to set the target of the containing instance
+                instances.add(new AnnotationInstance(nestedInstance.name(), containingInstance.target(), nestedInstance.valueArray()));
+            }
+        }
+        return instances;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public Collection<ModuleInfo> getKnownModules() {
+        return modules.values();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public ModuleInfo getModuleByName(DotName moduleName) {
+        return modules.get(moduleName);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public Collection<ClassInfo> getKnownUsers(DotName className) {
+        Index index = this.index;
+        if (index != null) {
+            return index.getKnownUsers(className);
+        }
+
+        Set<DotName> userNames = users.get(className);
+        if (userNames == null) {
+            return Collections.emptyList();
+        }
+
+        List<ClassInfo> result = new ArrayList<ClassInfo>(userNames.size());
+        for (DotName userName : userNames) {
+            result.add(getClassByName(userName));
+        }
+        return Collections.unmodifiableList(result);
+    }
+}
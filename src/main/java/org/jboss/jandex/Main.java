@@ -34,6 +34,9 @@ public class Main {
 
     private boolean modify;
     private boolean verbose;
+    private boolean parallel;
+    private boolean incremental;
+    private boolean nested;
     private boolean dump;
     private boolean jarFile;
     private File outputFile;
@@ -84,8 +87,19 @@ public class Main {
     }
 
     private Index getIndex(long start) throws IOException {
-        Indexer indexer = new Indexer();
-        Result result = (source.isDirectory()) ? indexDirectory(source, indexer) : JarIndexer.createJarIndex(source, indexer, outputFile, modify, jarFile, verbose);
+        Result result;
+        if (incremental) {
+            result = indexIncrementally(source);
+        } else if (source.isDirectory()) {
+            result = indexDirectory(source);
+        } else if (nested) {
+            Index index = new NestedJarIndexer(new IndexerOptions(), verbose, System.out, System.err).indexArchive(source);
+            result = writeIndex(index, outputFile != null ? outputFile : JarIndexer.getIndexFile(source, false));
+        } else if (parallel) {
+            result = JarIndexer.createJarIndex(source, new ParallelIndexer(), outputFile, modify, jarFile, verbose);
+        } else {
+            result = JarIndexer.createJarIndex(source, new Indexer(), outputFile, modify, jarFile, verbose);
+        }
 
         double time = (System.currentTimeMillis() - start) / 1000.00;
         System.out.printf(Locale.ROOT, "Wrote %s in %.4f seconds (%d classes, %d annotations, %d instances, %d class usages, %d bytes)%n", result.getName(), time, result.getClasses(), result.getAnnotations(), result.getInstances(), result.getUsages(), result.getBytes());
@@ -106,23 +120,67 @@ public class Main {
         System.out.printf(Locale.ROOT, "%nRead %s in %.04f seconds%n", source.getName(), end / 1000.0);
     }
 
-    private Result indexDirectory(File source, Indexer indexer) throws FileNotFoundException, IOException {
-        File outputFile = this.outputFile;
-        scanFile(source, indexer);
+    private Result indexDirectory(File source) throws FileNotFoundException, IOException {
+        Index index;
+        if (parallel) {
+            ParallelIndexer indexer = new ParallelIndexer();
+            indexer.addDirectory(source);
+            index = indexer.complete(verbose, System.out, System.err);
+        } else {
+            Indexer indexer = new Indexer();
+            scanFile(source, indexer);
+            index = indexer.complete();
+        }
+
+        return writeIndex(index, directoryIndexFile(source));
+    }
+
+    private Result indexIncrementally(File source) throws IOException {
+        File outputFile;
+        if (source.isDirectory()) {
+            outputFile = directoryIndexFile(source);
+        } else if (modify || jarFile) {
+            throw new IllegalArgumentException("-i can only update an external index file of a jar");
+        } else {
+            outputFile = this.outputFile != null ? this.outputFile : JarIndexer.getIndexFile(source, false);
+        }
+
+        Index previous = null;
+        if (outputFile.exists()) {
+            FileInputStream input = new FileInputStream(outputFile);
+            try {
+                previous = new IndexReader(input).read();
+            } catch (IOException e) {
+                System.err.println("WARNING: Could not read " + outputFile + ", indexing all classes: " + e.getMessage());
+            } finally {
+                safeClose(input);
+            }
+        }
+
+        IncrementalIndexer indexer = new IncrementalIndexer(previous, verbose, System.err);
+        Index index = source.isDirectory() ? indexer.indexDirectory(source) : indexer.indexJar(source);
+        if (verbose) {
+            System.out.println("Indexed " + indexer.getIndexedCount() + " class files, dropped " + indexer.getRemovedCount() + " classes");
+        }
+        return writeIndex(index, outputFile);
+    }
 
+    private File directoryIndexFile(File source) {
         if (modify) {
             new File(source, "META-INF").mkdirs();
-            outputFile = new File(source, "META-INF/jandex.idx");
+            return new File(source, "META-INF/jandex.idx");
         }
         if (outputFile == null) {
-            outputFile = new File(source.getName().replace('.', '-') + ".idx");
+            return new File(source.getName().replace('.', '-') + ".idx");
         }
+        return outputFile;
+    }
 
+    private Result writeIndex(Index index, File outputFile) throws IOException {
         FileOutputStream out = new FileOutputStream(outputFile);
         IndexWriter writer = new IndexWriter(out);
 
         try {
-            Index index = indexer.complete();
             int bytes = writer.write(index);
             return new Result(index, outputFile.getPath(), bytes, outputFile);
         } finally {
@@ -177,7 +235,7 @@ public class Main {
     }
 
     private static void printUsage() {
-        System.out.println("Usage: jandex [-v] [-m] [-o file-name] <directory> | <jar>");
+        System.out.println("Usage: jandex [-v] [-m] [-p] [-i] [-n] [-o file-name] <directory> | <jar>");
         System.out.println("        -or-");
         System.out.println("       jandex [-d] <index-file-name>");
         System.out.println("Options:");
@@ -185,6 +243,9 @@ public class Main {
         System.out.println("  -m  modify directory or jar instead of creating an external index file");
         System.out.println("  -o  name the external index file file-name");
         System.out.println("  -j  export the index file to a jar file");
+        System.out.println("  -p  index class files in parallel, using one thread per processor");
+        System.out.println("  -i  update the existing index file, only indexing class files that changed since it was written");
+        System.out.println("  -n  also index the class files of jars nested in the jar, such as WEB-INF/lib/*.jar (jar sources only)");
         System.out.println("  -d  dump the index file index-file-name");
         System.out.println("\nThe default behavior, with no options specified, is to autogenerate an external index file");
     }
@@ -223,6 +284,18 @@ public class Main {
                     jarFile = true;
                     optionCount++;
                     break;
+                case 'p':
+                    parallel = true;
+                    optionCount++;
+                    break;
+                case 'i':
+                    incremental = true;
+                    optionCount++;
+                    break;
+                case 'n':
+                    nested = true;
+                    optionCount++;
+                    break;
                 case 'o':
                     if (i >= args.length)
                         throw new IllegalArgumentException("-o requires an output file name");
@@ -245,6 +318,15 @@ public class Main {
         if (outputFile != null && modify)
             throw new IllegalArgumentException("-o and -m are mutually exclusive");
 
+        if (nested && (modify || jarFile || parallel || incremental))
+            throw new IllegalArgumentException("-n can not be specified with -m, -j, -p or -i");
+
+        if (nested && source.isDirectory())
+            throw new IllegalArgumentException("-n requires a jar source");
+
+        if (incremental && parallel)
+            throw new IllegalArgumentException("-i can not be specified with -p");
+
         if (dump && optionCount != 1)
             throw new IllegalArgumentException("-d can not be specified with other options");
 
@@ -0,0 +1,122 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2021 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jboss.jandex;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Reads a Jandex index file by mapping it into memory. Unlike {@link IndexReader}, which
+ * materializes the complete index up front, the class entries of the file are only decoded
+ * when they are first needed. This makes it a good fit for large indexes of which only a
+ * few classes or annotations are queried. Query results, including the order of the returned
+ * annotation instances, are the same as those of an index read by {@link IndexReader}.
+ *
+ * <p>
+ * Lazy decoding requires the class directory introduced with index version 11. Older
+ * index files are supported as well, but they are read completely when {@link #read()} is
+ * called.
+ *
+ * <p>
+ * The mapping is held by the returned index, and is released once the index becomes unreachable.
+ * Since the file is read on demand, it must not be modified while the index is in use.
+ *
+ * <p>
+ * <b>Thread-Safety</b>
+ * </p>
+ * MappedIndexReader is not thread-safe and can not be shared between concurrent
+ * threads. The resulting index, however, is.
+ *
+ */
+public final class MappedIndexReader {
+    private static final int MAGIC = 0xBABE1F15;
+    private final File file;
+    private int version = -1;
+
+    /**
+     * Constructs a new reader for the passed index file. The file is not
+     * opened until the read method is called.
+     *
+     * @param file a Jandex index file
+     */
+    public MappedIndexReader(File file) {
+        if (file == null) {
+            throw new IllegalArgumentException("file cannot be null");
+        }
+        this.file = file;
+    }
+
+    /**
+     * Maps the index file and returns a view of its content.
+     *
+     * @return the index contained in the file
+     * @throws IOException if an I/O error occurs
+     * @throws IllegalArgumentException if the file does not contain Jandex index data
+     * @throws UnsupportedVersion if the index data is tagged with a version not known to this reader
+     */
+    public IndexView read() throws IOException {
+        ByteBuffer buffer = map();
+        PackedDataInputStream input = new PackedDataInputStream(new ByteBufferInputStream(buffer.duplicate()));
+        if (buffer.remaining() < 5 || input.readInt() != MAGIC) {
+            throw new IllegalArgumentException("Not a jandex index");
+        }
+
+        version = input.readUnsignedByte();
+        if (version >= 11 && version <= IndexReaderV2.MAX_VERSION) {
+            return new IndexReaderV2(input).readLazily(version, buffer);
+        }
+
+        // No directory to work with, so fall back to a complete read
+        IndexReaderImpl reader;
+        if (version >= IndexReaderV1.MIN_VERSION && version <= IndexReaderV1.MAX_VERSION) {
+            reader = new IndexReaderV1(input);
+        } else if (version >= IndexReaderV2.MIN_VERSION && version <= IndexReaderV2.MAX_VERSION) {
+            reader = new IndexReaderV2(input);
+        } else {
+            throw new UnsupportedVersion("Can't read index version " + version
+                    + "; this MappedIndexReader only supports index versions "
+                    + IndexReaderV1.MIN_VERSION + "-" + IndexReaderV1.MAX_VERSION + ","
+                    + IndexReaderV2.MIN_VERSION + "-" + IndexReaderV2.MAX_VERSION);
+        }
+        return reader.read(version);
+    }
+
+    /**
+     * Returns the index file version of the last index read.
+     *
+     * @return the internal index file version, or -1 if no index has been read yet
+     */
+    public int getIndexVersion() {
+        return version;
+    }
+
+    private ByteBuffer map() throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = raf.getChannel();
+            // The mapping stays valid after the channel is closed
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } finally {
+            raf.close();
+        }
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2021 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jboss.jandex;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The transitive meta-annotations of every annotation type of an index, and the reverse table from
+ * a meta-annotation to the annotation types it (transitively) annotates. Meta-annotations whose types
+ * are not part of the index are recorded, but cannot be followed any further.
+ *
+ * <p><b>Thread-Safety</b></p>
+ * This class is immutable and can be shared between threads safely.
+ *
+ */
+final class MetaAnnotationIndex {
+    private static final Set<DotName> EMPTY_NAME_SET = Collections.emptySet();
+    private static final List<AnnotationInstance> EMPTY_ANNOTATION_LIST = Collections.emptyList();
+
+    // annotation type -> all of its meta-annotations
+    private final Map<DotName, Set<DotName>> metaAnnotations;
+
+    // meta-annotation -> all annotation types it annotates, directly or through other annotation types
+    private final Map<DotName, List<DotName>> annotatedTypes;
+
+    MetaAnnotationIndex(Collection<ClassInfo> classes) {
+        Map<DotName, ClassInfo> annotationTypes = new HashMap<DotName, ClassInfo>();
+        for (ClassInfo clazz : classes) {
+            if (clazz.isAnnotation() && !annotationTypes.containsKey(clazz.name())) {
+                annotationTypes.put(clazz.name(), clazz);
+            }
+        }
+
+        Map<DotName, Set<DotName>> metaAnnotations = new HashMap<DotName, Set<DotName>>();
+        Map<DotName, List<DotName>> annotatedTypes = new HashMap<DotName, List<DotName>>();
+        ArrayDeque<ClassInfo> toProcess = new ArrayDeque<ClassInfo>();
+        for (ClassInfo annotationType : annotationTypes.values()) {
+            Set<DotName> found = new HashSet<DotName>();
+            toProcess.add(annotationType);
+            while (!toProcess.isEmpty()) {
+                for (AnnotationInstance instance : toProcess.poll().classAnnotations()) {
+                    if (found.add(instance.name())) {
+                        ClassInfo metaAnnotationType = annotationTypes.get(instance.name());
+                        if (metaAnnotationType != null) {
+                            toProcess.add(metaAnnotationType);
+                        }
+                    }
+                }
+            }
+            if (found.isEmpty()) {
+                continue;
+            }
+
+            metaAnnotations.put(annotationType.name(), Collections.unmodifiableSet(found));
+            for (DotName metaAnnotation : found) {
+                List<DotName> list = annotatedTypes.get(metaAnnotation);
+                if (list == null) {
+                    list = new ArrayList<DotName>(1);
+                    annotatedTypes.put(metaAnnotation, list);
+                }
+                list.add(annotationType.name());
+            }
+        }
+        this.metaAnnotations = metaAnnotations;
+        this.annotatedTypes = annotatedTypes;
+    }
+
+    Set<DotName> getMetaAnnotations(DotName annotationName) {
+        if (annotationName == null) {
+            throw new IllegalArgumentException("annotationName cannot be null");
+        }
+        Set<DotName> set = metaAnnotations.get(annotationName);
+        return set == null ? EMPTY_NAME_SET : set;
+    }
+
+    List<AnnotationInstance> getAnnotationsWithMetaAnnotation(DotName metaAnnotationName, IndexView index) {
+        if (metaAnnotationName == null) {
+            throw new IllegalArgumentException("metaAnnotationName cannot be null");
+        }
+        List<DotName> types = annotatedTypes.get(metaAnnotationName);
+        if (types == null) {
+            return EMPTY_ANNOTATION_LIST;
+        }
+        List<AnnotationInstance> instances = new ArrayList<AnnotationInstance>();
+        for (DotName type : types) {
+            instances.addAll(index.getAnnotations(type));
+        }
+        return Collections.unmodifiableList(instances);
+    }
+}
@@ -18,15 +18,22 @@
 
 package org.jboss.jandex;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.Arrays;
 
 /**
  * A collection of intern pools.
  *
+ * <p>A table may be backed by a shared table, which several tables used from different threads have in
+ * common. Values missing from the table are then interned into the shared table first, so that all of
+ * these tables hand out the same instances. The shared table is only accessed while holding its lock,
+ * and the lookups of a table into its own pools, which hit for all but the first occurrence of a value,
+ * remain uncontended.</p>
+ *
  * @author Jason T. Greene
  */
 class NameTable {
+    private final NameTable shared;
+
     private StrongInternPool<String> stringPool = new StrongInternPool<String>();
     private StrongInternPool<Type> typePool = new StrongInternPool<Type>();
     private StrongInternPool<Type[]> typeListPool = new StrongInternPool<Type[]>();
@@ -34,30 +41,221 @@ class NameTable {
     private StrongInternPool<MethodInternal> methodPool = new StrongInternPool<MethodInternal>();
     private StrongInternPool<FieldInternal> fieldPool = new StrongInternPool<FieldInternal>();
     private StrongInternPool<RecordComponentInternal> recordComponentPool = new StrongInternPool<RecordComponentInternal>();
-    private Map<String, DotName> names = new HashMap<String, DotName>();
+
+    // Open-addressed table of componentized names keyed by their prefix node, local name and inner
+    // class flag, so that a name is looked up one segment at a time without creating substrings
+    private DotName[] nameNodes = new DotName[256];
+    private int nameNodeCount;
+    // segment start positions of the name being converted, from the innermost segment outwards
+    private int[] segments = new int[16];
+
+    // Open-addressed table of '/' delimited names keyed by their modified UTF-8 bytes,
+    // allocated when the first name is stored
+    private byte[][] utf8Keys;
+    private DotName[] utf8Names;
+    private int utf8Size;
+
+    NameTable() {
+        this(null);
+    }
+
+    NameTable(NameTable shared) {
+        this.shared = shared;
+    }
 
     DotName convertToName(String name) {
         return convertToName(name, '.');
     }
 
     DotName convertToName(String name, char delim) {
-        DotName result = names.get(name);
-        if (result != null)
-            return result;
+        // Split the name from right to left, as the prefix of a segment is the name up to its delimiter
+        int[] segments = this.segments;
+        int count = 0;
+        int end = name.length();
+        int loc;
+        do {
+            loc = lastIndexOf(name, end, delim);
+            if (count == segments.length) {
+                segments = this.segments = Arrays.copyOf(segments, count << 1);
+            }
+            segments[count++] = loc;
+            end = loc;
+        } while (loc >= 1);
+
+        // and resolve it from left to right, so that each segment is looked up under its resolved prefix
+        DotName result = null;
+        end = name.length();
+        for (int i = count - 1; i >= 0; i--) {
+            loc = segments[i];
+            int segmentEnd = i > 0 ? segments[i - 1] : end;
+            boolean inner = loc > 0 && name.charAt(loc) == '$';
+            DotName node = lookupNode(result, name, loc + 1, segmentEnd, inner);
+            if (node == null) {
+                if (shared != null) {
+                    synchronized (shared) {
+                        node = shared.lookupNode(result, name, loc + 1, segmentEnd, inner);
+                        if (node == null) {
+                            node = new DotName(result, shared.intern(name.substring(loc + 1, segmentEnd)), true, inner);
+                            shared.storeNode(node);
+                        }
+                    }
+                } else {
+                    node = new DotName(result, intern(name.substring(loc + 1, segmentEnd)), true, inner);
+                }
+                storeNode(node);
+            }
+            result = node;
+        }
 
-        int loc = lastIndexOf(name, delim);
-        String local = intern(name.substring(loc + 1));
-        DotName prefix = loc < 1 ? null : convertToName(intern(name.substring(0, loc)), delim);
-        result = new DotName(prefix, local, true, loc > 0 && name.charAt(loc) == '$');
+        return result;
+    }
 
-        names.put(name, result);
+    private DotName lookupNode(DotName prefix, String name, int start, int end, boolean inner) {
+        DotName[] nodes = nameNodes;
+        int mask = nodes.length - 1;
+        for (int i = spread(nodeHash(prefix, name, start, end, inner)) & mask; nodes[i] != null; i = (i + 1) & mask) {
+            DotName node = nodes[i];
+            if (node.prefix() == prefix && node.isInner() == inner && node.local().length() == end - start
+                    && node.local().regionMatches(0, name, start, end - start)) {
+                return node;
+            }
+        }
+        return null;
+    }
 
-        return result;
+    private void storeNode(DotName node) {
+        if (nameNodeCount >= nameNodes.length >> 1) {
+            DotName[] oldNodes = nameNodes;
+            nameNodes = new DotName[oldNodes.length << 1];
+            for (DotName oldNode : oldNodes) {
+                if (oldNode != null) {
+                    insertNode(oldNode);
+                }
+            }
+        }
+        insertNode(node);
+        nameNodeCount++;
+    }
+
+    private void insertNode(DotName node) {
+        DotName[] nodes = nameNodes;
+        int mask = nodes.length - 1;
+        int i = spread(node.hashCode()) & mask;
+        while (nodes[i] != null) {
+            i = (i + 1) & mask;
+        }
+        nodes[i] = node;
+    }
+
+    /**
+     * Computes the hash code the componentized name made of the prefix and local name would have, see
+     * {@link DotName#hashCode()}, so that stored nodes can be rehashed without the source string.
+     */
+    private static int nodeHash(DotName prefix, String name, int start, int end, boolean inner) {
+        int hash = prefix == null ? 0 : prefix.hashCode() * 31 + (inner ? '$' : '.');
+        for (int i = start; i < end; i++) {
+            hash = 31 * hash + name.charAt(i);
+        }
+        return hash;
+    }
+
+    private static int spread(int h) {
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * Looks up a '/' delimited name by the modified UTF-8 bytes it was stored with, without
+     * decoding them. Returns null if no name has been stored for these bytes yet.
+     */
+    DotName lookupName(byte[] buf, int offset, int len) {
+        byte[][] keys = utf8Keys;
+        if (keys == null) {
+            return null;
+        }
+
+        int mask = keys.length - 1;
+        for (int i = hash(buf, offset, len) & mask; keys[i] != null; i = (i + 1) & mask) {
+            if (equals(keys[i], buf, offset, len)) {
+                return utf8Names[i];
+            }
+        }
+        return null;
     }
 
-    private int lastIndexOf(String name, char delim) {
+    /**
+     * Records the name converted from the modified UTF-8 bytes in the passed range, so that
+     * {@link #lookupName(byte[], int, int)} finds it. The bytes are copied.
+     */
+    void storeName(byte[] buf, int offset, int len, DotName name) {
+        if (utf8Keys == null) {
+            utf8Keys = new byte[64][];
+            utf8Names = new DotName[64];
+        } else if (utf8Size >= utf8Keys.length >> 1) {
+            resizeNames();
+        }
+
+        byte[][] keys = utf8Keys;
+        int mask = keys.length - 1;
+        int i = hash(buf, offset, len) & mask;
+        while (keys[i] != null) {
+            if (equals(keys[i], buf, offset, len)) {
+                utf8Names[i] = name;
+                return;
+            }
+            i = (i + 1) & mask;
+        }
+        keys[i] = Arrays.copyOfRange(buf, offset, offset + len);
+        utf8Names[i] = name;
+        utf8Size++;
+    }
+
+    private void resizeNames() {
+        byte[][] oldKeys = utf8Keys;
+        DotName[] oldNames = utf8Names;
+        byte[][] keys = new byte[oldKeys.length << 1][];
+        DotName[] values = new DotName[keys.length];
+        int mask = keys.length - 1;
+
+        for (int j = 0; j < oldKeys.length; j++) {
+            byte[] key = oldKeys[j];
+            if (key != null) {
+                int i = hash(key, 0, key.length) & mask;
+                while (keys[i] != null) {
+                    i = (i + 1) & mask;
+                }
+                keys[i] = key;
+                values[i] = oldNames[j];
+            }
+        }
+
+        utf8Keys = keys;
+        utf8Names = values;
+    }
+
+    private static int hash(byte[] buf, int offset, int len) {
+        int h = 1;
+        for (int i = offset, end = offset + len; i < end; i++) {
+            h = 31 * h + buf[i];
+        }
+        // spread the bits, as linear probing is sensitive to clustering
+        return h ^ (h >>> 16);
+    }
+
+    private static boolean equals(byte[] key, byte[] buf, int offset, int len) {
+        if (key.length != len) {
+            return false;
+        }
+        for (int i = 0; i < len; i++) {
+            if (key[i] != buf[offset + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int lastIndexOf(String name, int end, char delim) {
         // Begin at second last position to avoid empty local name
-        int pos = name.length() - 1;
+        int pos = end - 1;
         while (--pos >= 0) {
             char c = name.charAt(pos);
             if (c == delim || c == '$') {
@@ -81,8 +279,23 @@ class NameTable {
         return intern(name, '.');
     }
 
+    private <T> T intern(StrongInternPool<T> pool, T value, StrongInternPool<T> sharedPool) {
+        if (shared == null) {
+            return pool.intern(value);
+        }
+
+        T existing = pool.get(value);
+        if (existing != null) {
+            return existing;
+        }
+        synchronized (shared) {
+            value = sharedPool.intern(value);
+        }
+        return pool.intern(value);
+    }
+
     String intern(String string) {
-        return stringPool.intern(string);
+        return intern(stringPool, string, shared == null ? null : shared.stringPool);
     }
 
     int positionOf(String string) {
@@ -90,15 +303,15 @@ class NameTable {
     }
 
     Type intern(Type type) {
-        return typePool.intern(type);
+        return intern(typePool, type, shared == null ? null : shared.typePool);
     }
 
     Type[] intern(Type[] types) {
-        return typeListPool.intern(types);
+        return intern(typeListPool, types, shared == null ? null : shared.typeListPool);
     }
 
     byte[] intern(byte[] bytes) {
-        return bytePool.intern(bytes);
+        return intern(bytePool, bytes, shared == null ? null : shared.bytePool);
     }
 
     int positionOf(byte[] type) {
@@ -106,7 +319,7 @@ class NameTable {
     }
 
     MethodInternal intern(MethodInternal methodInternal) {
-        return methodPool.intern(methodInternal);
+        return intern(methodPool, methodInternal, shared == null ? null : shared.methodPool);
     }
 
     int positionOf(MethodInternal methodInternal) {
@@ -114,7 +327,7 @@ class NameTable {
     }
 
     FieldInternal intern(FieldInternal fieldInternal) {
-        return fieldPool.intern(fieldInternal);
+        return intern(fieldPool, fieldInternal, shared == null ? null : shared.fieldPool);
     }
 
     int positionOf(FieldInternal fieldInternal) {
@@ -122,7 +335,7 @@ class NameTable {
     }
 
     RecordComponentInternal intern(RecordComponentInternal recordComponentInternal) {
-        return recordComponentPool.intern(recordComponentInternal);
+        return intern(recordComponentPool, recordComponentInternal, shared == null ? null : shared.recordComponentPool);
     }
 
     int positionOf(RecordComponentInternal recordComponentInternal) {
@@ -150,13 +363,35 @@ class NameTable {
     }
 
     DotName intern(DotName dotName, char delim) {
-        String name = dotName.toString(delim);
-        DotName old = names.get(name);
+        if (!dotName.isComponentized()) {
+            return convertToName(dotName.toString(delim), delim);
+        }
+
+        DotName prefix = dotName.prefix() == null ? null : intern(dotName.prefix(), delim);
+        String local = dotName.local();
+        DotName old = lookupNode(prefix, local, 0, local.length(), dotName.isInner());
         if (old == null) {
-            old = dotName;
-            names.put(name, dotName);
+            if (shared != null) {
+                synchronized (shared) {
+                    old = shared.internNode(dotName, prefix);
+                }
+            } else {
+                old = prefix == dotName.prefix() ? dotName : new DotName(prefix, intern(local), true, dotName.isInner());
+            }
+            storeNode(old);
         }
 
         return old;
     }
+
+    // interns a componentized name whose prefix has already been interned into this table
+    private DotName internNode(DotName dotName, DotName prefix) {
+        String local = dotName.local();
+        DotName node = lookupNode(prefix, local, 0, local.length(), dotName.isInner());
+        if (node == null) {
+            node = prefix == dotName.prefix() ? dotName : new DotName(prefix, intern(local), true, dotName.isInner());
+            storeNode(node);
+        }
+        return node;
+    }
 }
@@ -0,0 +1,254 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2021 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jboss.jandex;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Indexes the class files of an archive together with the class files of every archive nested in it,
+ * such as the libraries in <code>WEB-INF/lib</code> of a war, <code>BOOT-INF/lib</code> of an executable
+ * jar, or the modules of an ear. Nested archives are read as they are streamed from their enclosing
+ * archive, so nothing is extracted to disk.
+ *
+ * <p>Entries ending in <code>.jar</code>, <code>.war</code>, <code>.ear</code> or <code>.rar</code> are
+ * treated as nested archives, at any depth. The result is either one index covering every class found,
+ * or one index per archive keyed by its path. The path of a nested archive is the path of its enclosing
+ * archive, followed by <code>!/</code> and the entry name, for example
+ * <code>app.ear!/web.war!/WEB-INF/lib/util.jar</code>.</p>
+ *
+ * <p>Class files which can not be indexed either fail the whole run, or are reported to an error stream
+ * and skipped like {@link JarIndexer} does, depending on the constructor.</p>
+ *
+ * <p><b>Thread-Safety</b></p>
+ * This class is not thread-safe and can not be shared between concurrent threads.
+ *
+ * @see JarIndexer
+ */
+public final class NestedJarIndexer {
+    private static final String SEPARATOR = "!/";
+
+    private final IndexerOptions options;
+    private final boolean verbose;
+    private final PrintStream infoStream;
+    private final PrintStream errStream;
+
+    /**
+     * Constructs a nested jar indexer which records everything the default {@link Indexer} records.
+     */
+    public NestedJarIndexer() {
+        this(new IndexerOptions());
+    }
+
+    /**
+     * Constructs a nested jar indexer which records the class file information selected by the passed options.
+     *
+     * @param options the indexing options, copied by this constructor
+     */
+    public NestedJarIndexer(IndexerOptions options) {
+        if (options == null) {
+            throw new IllegalArgumentException("options cannot be null");
+        }
+        this.options = new IndexerOptions(options);
+        this.verbose = false;
+        this.infoStream = null;
+        this.errStream = null;
+    }
+
+    /**
+     * Constructs a nested jar indexer which records the class file information selected by the passed options,
+     * and reports class files which could not be indexed to the passed stream instead of failing.
+     *
+     * @param options the indexing options, copied by this constructor
+     * @param verbose whether to record every indexed class, and the stack trace of every error
+     * @param infoStream a print stream which will record verbose info, may be null
+     * @param errStream a print stream to print errors, must not be null
+     */
+    public NestedJarIndexer(IndexerOptions options, boolean verbose, PrintStream infoStream, PrintStream errStream) {
+        if (options == null) {
+            throw new IllegalArgumentException("options cannot be null");
+        }
+        if (errStream == null) {
+            throw new IllegalArgumentException("errStream cannot be null");
+        }
+        this.options = new IndexerOptions(options);
+        this.verbose = verbose;
+        this.infoStream = infoStream;
+        this.errStream = errStream;
+    }
+
+    /**
+     * Indexes the class files of the given archive and of all archives nested in it into one index.
+     *
+     * @param archive the archive to index
+     * @return an index of every class found
+     * @throws IOException if an archive could not be read, or a class file could not be read or indexed
+     *                     unless errors are reported to a stream
+     */
+    public Index indexArchive(File archive) throws IOException {
+        if (archive == null) {
+            throw new IllegalArgumentException("archive cannot be null");
+        }
+
+        InputStream stream = new FileInputStream(archive);
+        try {
+            return indexArchive(stream);
+        } finally {
+            safeClose(stream);
+        }
+    }
+
+    /**
+     * Indexes the class files of the archive read from the given stream, and of all archives nested in it,
+     * into one index. The stream is read to the end of the archive but is not closed.
+     *
+     * @param stream the stream to read the archive from
+     * @return an index of every class found
+     * @throws IOException if an archive could not be read, or a class file could not be read or indexed
+     *                     unless errors are reported to a stream
+     */
+    public Index indexArchive(InputStream stream) throws IOException {
+        if (stream == null) {
+            throw new IllegalArgumentException("stream cannot be null");
+        }
+
+        Indexer indexer = new Indexer(options);
+        scan(new ZipInputStream(new BufferedInputStream(stream)), "", indexer, null);
+        return indexer.complete();
+    }
+
+    /**
+     * Indexes the given archive and all archives nested in it separately, producing one index per archive.
+     * The given archive is keyed by its file name.
+     *
+     * @param archive the archive to index
+     * @return the index of every archive keyed by its path, in the order the archives were found
+     * @throws IOException if an archive could not be read, or a class file could not be read or indexed
+     *                     unless errors are reported to a stream
+     */
+    public Map<String, Index> indexArchives(File archive) throws IOException {
+        if (archive == null) {
+            throw new IllegalArgumentException("archive cannot be null");
+        }
+
+        InputStream stream = new FileInputStream(archive);
+        try {
+            return indexArchives(stream, archive.getName());
+        } finally {
+            safeClose(stream);
+        }
+    }
+
+    /**
+     * Indexes the archive read from the given stream and all archives nested in it separately, producing
+     * one index per archive. The stream is read to the end of the archive but is not closed.
+     *
+     * @param stream the stream to read the archive from
+     * @param name the path to key the outermost archive with
+     * @return the index of every archive keyed by its path, in the order the archives were found
+     * @throws IOException if an archive could not be read, or a class file could not be read or indexed
+     *                     unless errors are reported to a stream
+     */
+    public Map<String, Index> indexArchives(InputStream stream, String name) throws IOException {
+        if (stream == null) {
+            throw new IllegalArgumentException("stream cannot be null");
+        }
+        if (name == null) {
+            throw new IllegalArgumentException("name cannot be null");
+        }
+
+        Map<String, Index> indexes = new LinkedHashMap<String, Index>();
+        scan(new ZipInputStream(new BufferedInputStream(stream)), name, null, indexes);
+        return indexes;
+    }
+
+    /**
+     * Indexes the entries of one archive, descending into nested archives as they are encountered. When
+     * a map of indexes is passed, the archive gets its own indexer and its index is added to the map once
+     * all of its entries were read; otherwise everything is added to the passed indexer. The nested stream
+     * is not closed, since that would close the enclosing archive.
+     */
+    private void scan(ZipInputStream zip, String path, Indexer indexer, Map<String, Index> indexes) throws IOException {
+        Indexer archiveIndexer = indexes != null ? new Indexer(options) : indexer;
+        if (indexes != null) {
+            // reserve the position of the enclosing archive ahead of its nested archives
+            indexes.put(path, null);
+        }
+
+        ZipEntry entry;
+        while ((entry = zip.getNextEntry()) != null) {
+            if (entry.isDirectory()) {
+                continue;
+            }
+
+            String name = entry.getName();
+            if (name.endsWith(".class")) {
+                index(archiveIndexer, zip, entryPath(path, name));
+            } else if (isArchive(name)) {
+                scan(new ZipInputStream(zip), entryPath(path, name), indexer, indexes);
+            }
+        }
+
+        if (indexes != null) {
+            indexes.put(path, archiveIndexer.complete());
+        }
+    }
+
+    private void index(Indexer indexer, InputStream stream, String path) throws IOException {
+        try {
+            ClassInfo info = indexer.index(stream);
+            if (verbose && info != null && infoStream != null)
+                JarIndexer.printIndexEntryInfo(info, infoStream);
+        } catch (Exception e) {
+            String message = e.getMessage() == null ? e.getClass().getSimpleName() : e.getMessage();
+            if (errStream == null) {
+                throw new IOException("Could not index " + path + ": " + message, e);
+            }
+            errStream.println("ERROR: Could not index " + path + ": " + message);
+            if (verbose)
+                e.printStackTrace(errStream);
+        }
+    }
+
+    private static String entryPath(String path, String name) {
+        return path.length() == 0 ? name : path + SEPARATOR + name;
+    }
+
+    private static boolean isArchive(String name) {
+        String lowerCase = name.toLowerCase(Locale.ROOT);
+        return lowerCase.endsWith(".jar") || lowerCase.endsWith(".war")
+                || lowerCase.endsWith(".ear") || lowerCase.endsWith(".rar");
+    }
+
+    private static void safeClose(InputStream stream) {
+        try {
+            stream.close();
+        } catch (Exception ignore) {
+        }
+    }
+}
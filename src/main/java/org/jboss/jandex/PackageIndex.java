@@ -0,0 +1,140 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2021 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jboss.jandex;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The classes of an index grouped by package, together with the tree of packages. Package names are
+ * taken from the prefixes of componentized class names where possible, so the packages of an index
+ * read from a file share the instances of its name table. Classes of the unnamed package are not
+ * included.
+ *
+ * <p><b>Thread-Safety</b></p>
+ * This class is immutable and can be shared between threads safely.
+ *
+ */
+final class PackageIndex {
+    private static final List<ClassInfo> EMPTY_CLASSINFO_LIST = Collections.emptyList();
+
+    // classes declared directly in a package
+    private final Map<DotName, List<ClassInfo>> classes;
+
+    // the direct subpackages of a package, including those which only contain other packages
+    private final Map<DotName, List<DotName>> subpackages;
+
+    PackageIndex(Collection<ClassInfo> all) {
+        Map<DotName, List<ClassInfo>> classes = new HashMap<DotName, List<ClassInfo>>();
+        Map<DotName, List<DotName>> subpackages = new HashMap<DotName, List<DotName>>();
+        for (ClassInfo clazz : all) {
+            DotName packageName = packageOf(clazz.name());
+            if (packageName == null) {
+                continue;
+            }
+            List<ClassInfo> list = classes.get(packageName);
+            if (list == null) {
+                list = new ArrayList<ClassInfo>();
+                classes.put(packageName, list);
+                addToParents(packageName, subpackages);
+            }
+            list.add(clazz);
+        }
+
+        for (Map.Entry<DotName, List<ClassInfo>> entry : classes.entrySet()) {
+            entry.setValue(Collections.unmodifiableList(entry.getValue()));
+        }
+        this.classes = classes;
+        this.subpackages = subpackages;
+    }
+
+    private static void addToParents(DotName packageName, Map<DotName, List<DotName>> subpackages) {
+        DotName child = packageName;
+        DotName parent = parentOf(child);
+        while (parent != null) {
+            List<DotName> children = subpackages.get(parent);
+            boolean known = children != null;
+            if (!known) {
+                children = new ArrayList<DotName>(2);
+                subpackages.put(parent, children);
+            }
+            if (!children.contains(child)) {
+                children.add(child);
+            }
+            if (known) {
+                // the parents of a known package have been linked already
+                return;
+            }
+            child = parent;
+            parent = parentOf(child);
+        }
+    }
+
+    static DotName packageOf(DotName className) {
+        if (className.isComponentized()) {
+            DotName name = className;
+            while (name.isInner()) {
+                name = name.prefix();
+            }
+            return name.prefix();
+        }
+        String packagePrefix = className.packagePrefix();
+        return packagePrefix == null ? null : DotName.createSimple(packagePrefix);
+    }
+
+    private static DotName parentOf(DotName packageName) {
+        if (packageName.isComponentized()) {
+            return packageName.prefix();
+        }
+        String packagePrefix = packageName.packagePrefix();
+        return packagePrefix == null ? null : DotName.createSimple(packagePrefix);
+    }
+
+    List<ClassInfo> getClasses(DotName packageName, boolean recursive) {
+        if (packageName == null) {
+            throw new IllegalArgumentException("packageName cannot be null");
+        }
+
+        if (!recursive) {
+            List<ClassInfo> list = classes.get(packageName);
+            return list == null ? EMPTY_CLASSINFO_LIST : list;
+        }
+
+        List<ClassInfo> result = new ArrayList<ClassInfo>();
+        ArrayDeque<DotName> toProcess = new ArrayDeque<DotName>();
+        toProcess.add(packageName);
+        while (!toProcess.isEmpty()) {
+            DotName name = toProcess.poll();
+            List<ClassInfo> list = classes.get(name);
+            if (list != null) {
+                result.addAll(list);
+            }
+            List<DotName> children = subpackages.get(name);
+            if (children != null) {
+                toProcess.addAll(children);
+            }
+        }
+        return Collections.unmodifiableList(result);
+    }
+}
@@ -0,0 +1,584 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2021 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jboss.jandex;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Indexes a set of class files using a pool of worker threads. Each worker owns a private
+ * {@link Indexer}, since an indexer carries per-class parsing state and can not be shared.
+ * Once all class files have been processed, the per-worker results are merged into a single
+ * {@link Index}.
+ *
+ * <p>The merge is deterministic: every list in the resulting index (annotation instances,
+ * subclasses, implementors and users) is ordered as if the class files had been passed to a
+ * single {@code Indexer} in the order they were added, regardless of the number of threads
+ * or the way work was distributed between them.
+ *
+ * <p>The entries of a jar are listed once, from its central directory, and distributed between the
+ * workers like any other class file. Each worker reads them through its own {@link ZipFile}, so that
+ * workers do not contend for a shared file handle while inflating.
+ *
+ * <p>The names, types and members of all workers are interned into one shared table, so that the
+ * merged index holds a single instance of each of them, as an index built by a single
+ * {@code Indexer} does. Every worker looks values up in its own table first and only takes the lock
+ * of the shared table for values it has not seen before.
+ *
+ * <p><b>Thread-Safety</b></p>
+ * This class is not thread-safe; sources must be added and the index completed from a single
+ * thread. The workers it starts are private to each {@link #complete()} call.
+ *
+ */
+public final class ParallelIndexer {
+    private static final int BATCH_SIZE = 32;
+
+    private final int threads;
+    private final IndexerOptions options;
+    private final List<File> sources = new ArrayList<File>();
+    private final List<Boolean> jarSources = new ArrayList<Boolean>();
+
+    /**
+     * Constructs a parallel indexer which uses one worker per available processor.
+     */
+    public ParallelIndexer() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Constructs a parallel indexer which uses the specified number of workers.
+     *
+     * @param threads the number of worker threads, must be at least 1
+     */
+    public ParallelIndexer(int threads) {
+        this(threads, new IndexerOptions());
+    }
+
+    /**
+     * Constructs a parallel indexer which uses the specified number of workers, each of which
+     * processes the parts of the class files selected by the passed options. The options are
+     * copied, later changes to them have no effect.
+     *
+     * @param threads the number of worker threads, must be at least 1
+     * @param options the indexer options
+     */
+    public ParallelIndexer(int threads, IndexerOptions options) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("threads must be at least 1");
+        }
+        if (options == null) {
+            throw new IllegalArgumentException("options cannot be null");
+        }
+        this.threads = threads;
+        this.options = new IndexerOptions(options);
+    }
+
+    /**
+     * Adds a single class file to the set of sources to index.
+     *
+     * @param classFile the class file
+     */
+    public void addClass(File classFile) {
+        if (classFile == null) {
+            throw new IllegalArgumentException("classFile cannot be null");
+        }
+        sources.add(classFile);
+        jarSources.add(Boolean.FALSE);
+    }
+
+    /**
+     * Recursively adds every file ending in {@code .class} found under the
+     * passed directory to the set of sources to index.
+     *
+     * @param directory the directory to scan
+     * @throws FileNotFoundException if the directory, or one of its children, disappears while scanning
+     */
+    public void addDirectory(File directory) throws FileNotFoundException {
+        if (directory == null) {
+            throw new IllegalArgumentException("directory cannot be null");
+        }
+
+        File[] children = directory.listFiles();
+        if (children == null)
+            throw new FileNotFoundException("Source directory disappeared: " + directory);
+
+        for (File child : children) {
+            if (child.isDirectory()) {
+                addDirectory(child);
+            } else if (child.getName().endsWith(".class")) {
+                addClass(child);
+            }
+        }
+    }
+
+    /**
+     * Adds every entry ending in {@code .class} of the passed jar file to the set of sources
+     * to index. The jar is opened when {@link #complete()} is called, once to list its entries
+     * and once by every worker which indexes some of them.
+     *
+     * @param jarFile the jar file
+     */
+    public void addJar(File jarFile) {
+        if (jarFile == null) {
+            throw new IllegalArgumentException("jarFile cannot be null");
+        }
+        sources.add(jarFile);
+        jarSources.add(Boolean.TRUE);
+    }
+
+    /**
+     * Indexes all added sources and returns the merged index. The added sources are
+     * cleared, so the instance can be reused for a new index afterwards.
+     *
+     * @return the index of all added class files
+     * @throws IOException if a source could not be read or a class file is corrupt; if several
+     *                     class files fail, the one which was added first is reported
+     */
+    public Index complete() throws IOException {
+        return index(false, null, null);
+    }
+
+    /**
+     * Indexes all added sources and returns the merged index, reporting class files which could not be
+     * indexed instead of failing. As with {@link JarIndexer}, each such class file is reported as an error
+     * and skipped, and the index of all other class files is returned. The added sources are cleared, so
+     * the instance can be reused for a new index afterwards.
+     *
+     * <p>In verbose mode, every indexed class is recorded to the info stream. Classes and errors are
+     * reported in the order the class files were added, once all workers are done.</p>
+     *
+     * @param verbose whether to record every indexed class, and the stack trace of every error
+     * @param infoStream a print stream which will record verbose info, may be null
+     * @param errStream a print stream to print errors, must not be null
+     * @return the index of all class files which could be indexed
+     * @throws IOException if a jar could not be read
+     */
+    public Index complete(boolean verbose, PrintStream infoStream, PrintStream errStream) throws IOException {
+        if (errStream == null) {
+            throw new IllegalArgumentException("errStream cannot be null");
+        }
+        return index(verbose, infoStream, errStream);
+    }
+
+    // Fails on the first corrupt class file if errStream is null, and reports them all otherwise
+    private Index index(boolean verbose, PrintStream infoStream, PrintStream errStream) throws IOException {
+        ExecutorService executor = null;
+        try {
+            List<ClassSource> classSources = expandSources();
+
+            List<WorkerResult> results;
+            int workers = Math.min(threads, (classSources.size() + BATCH_SIZE - 1) / BATCH_SIZE);
+            if (workers <= 1) {
+                results = Collections.singletonList(new Worker(classSources, new AtomicInteger(), options, null).call());
+            } else {
+                executor = Executors.newFixedThreadPool(workers, new WorkerThreadFactory());
+                AtomicInteger nextBatch = new AtomicInteger();
+                NameTable sharedNames = new NameTable();
+                List<Future<WorkerResult>> futures = new ArrayList<Future<WorkerResult>>(workers);
+                for (int i = 0; i < workers; i++) {
+                    futures.add(executor.submit(new Worker(classSources, nextBatch, options, sharedNames)));
+                }
+
+                results = new ArrayList<WorkerResult>(workers);
+                for (Future<WorkerResult> future : futures) {
+                    results.add(getResult(future));
+                }
+            }
+
+            report(classSources, results, verbose, infoStream, errStream);
+            return merge(results);
+        } finally {
+            if (executor != null) {
+                executor.shutdownNow();
+            }
+            sources.clear();
+            jarSources.clear();
+        }
+    }
+
+    /**
+     * Reports the outcome of every class file in the order the class files were added, or throws for
+     * the first failure if there is no error stream.
+     */
+    private static void report(List<ClassSource> classSources, List<WorkerResult> results, boolean verbose,
+                               PrintStream infoStream, PrintStream errStream) throws IOException {
+        Object[] outcomes = new Object[classSources.size()];
+        for (WorkerResult result : results) {
+            for (Map.Entry<ClassInfo, Integer> entry : result.order.entrySet()) {
+                outcomes[entry.getValue().intValue()] = entry.getKey();
+            }
+            for (Failure failure : result.failures) {
+                outcomes[failure.ordinal] = failure;
+            }
+        }
+
+        boolean printClasses = verbose && infoStream != null;
+        for (Object outcome : outcomes) {
+            if (outcome instanceof Failure) {
+                Failure failure = (Failure) outcome;
+                Throwable cause = failure.cause;
+                String message = cause.getMessage() == null ? cause.getClass().getSimpleName() : cause.getMessage();
+                if (errStream == null) {
+                    throw new IOException("Could not index " + failure.name + ": " + message, cause);
+                }
+                errStream.println("ERROR: Could not index " + failure.name + ": " + message);
+                if (verbose)
+                    cause.printStackTrace(errStream);
+            } else if (outcome != null && printClasses) {
+                JarIndexer.printIndexEntryInfo((ClassInfo) outcome, infoStream);
+            }
+        }
+    }
+
+    private List<ClassSource> expandSources() throws IOException {
+        List<ClassSource> result = new ArrayList<ClassSource>(sources.size());
+        for (int i = 0; i < sources.size(); i++) {
+            File source = sources.get(i);
+            if (!jarSources.get(i)) {
+                result.add(new FileSource(source));
+                continue;
+            }
+
+            ZipFile jar = new ZipFile(source);
+            try {
+                Enumeration<? extends ZipEntry> entries = jar.entries();
+                while (entries.hasMoreElements()) {
+                    ZipEntry entry = entries.nextElement();
+                    if (entry.getName().endsWith(".class")) {
+                        result.add(new JarEntrySource(source, entry));
+                    }
+                }
+            } finally {
+                safeClose(jar);
+            }
+        }
+
+        return result;
+    }
+
+    private static WorkerResult getResult(Future<WorkerResult> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for indexing to complete", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IOException("Indexing failed", cause);
+        }
+    }
+
+    private static Index merge(List<WorkerResult> results) {
+        if (results.size() == 1) {
+            return results.get(0).index;
+        }
+
+        final Map<ClassInfo, Integer> order = new IdentityHashMap<ClassInfo, Integer>();
+        for (WorkerResult result : results) {
+            order.putAll(result.order);
+        }
+
+        Comparator<ClassInfo> classOrder = new Comparator<ClassInfo>() {
+            public int compare(ClassInfo o1, ClassInfo o2) {
+                return ordinal(order, o1) - ordinal(order, o2);
+            }
+        };
+        Comparator<AnnotationInstance> annotationOrder = new Comparator<AnnotationInstance>() {
+            public int compare(AnnotationInstance o1, AnnotationInstance o2) {
+                return ordinal(order, owner(o1.target())) - ordinal(order, owner(o2.target()));
+            }
+        };
+
+        Map<DotName, List<AnnotationInstance>> annotations = new HashMap<DotName, List<AnnotationInstance>>();
+        Map<DotName, List<ClassInfo>> subclasses = new HashMap<DotName, List<ClassInfo>>();
+        Map<DotName, List<ClassInfo>> implementors = new HashMap<DotName, List<ClassInfo>>();
+        Map<DotName, List<ClassInfo>> users = new HashMap<DotName, List<ClassInfo>>();
+        for (WorkerResult result : results) {
+            mergeLists(annotations, result.index.annotations);
+            mergeLists(subclasses, result.index.subclasses);
+            mergeLists(implementors, result.index.implementors);
+            mergeLists(users, result.index.users);
+        }
+        sortLists(annotations, annotationOrder);
+        sortLists(subclasses, classOrder);
+        sortLists(implementors, classOrder);
+        sortLists(users, classOrder);
+
+        // A class indexed more than once is replaced by the last occurrence, as with a single Indexer
+        List<ClassInfo> allClasses = new ArrayList<ClassInfo>();
+        Map<DotName, ModuleInfo> modules = new HashMap<DotName, ModuleInfo>();
+        for (WorkerResult result : results) {
+            allClasses.addAll(result.index.classes.values());
+            for (ModuleInfo module : result.index.modules.values()) {
+                ModuleInfo existing = modules.get(module.name());
+                if (existing == null || ordinal(order, existing.moduleInfoClass()) < ordinal(order, module.moduleInfoClass())) {
+                    modules.put(module.name(), module);
+                }
+            }
+        }
+        Collections.sort(allClasses, classOrder);
+        Map<DotName, ClassInfo> classes = new HashMap<DotName, ClassInfo>(allClasses.size() * 4 / 3 + 1);
+        for (ClassInfo clazz : allClasses) {
+            classes.put(clazz.name(), clazz);
+        }
+
+        return new Index(annotations, subclasses, implementors, classes, modules, users);
+    }
+
+    private static <T> void mergeLists(Map<DotName, List<T>> target, Map<DotName, List<T>> source) {
+        for (Map.Entry<DotName, List<T>> entry : source.entrySet()) {
+            List<T> list = target.get(entry.getKey());
+            if (list == null) {
+                list = new ArrayList<T>(entry.getValue().size());
+                target.put(entry.getKey(), list);
+            }
+            list.addAll(entry.getValue());
+        }
+    }
+
+    private static <T> void sortLists(Map<DotName, List<T>> map, Comparator<T> comparator) {
+        for (List<T> list : map.values()) {
+            // Stable, so the relative order of elements from the same class is retained
+            Collections.sort(list, comparator);
+        }
+    }
+
+    private static int ordinal(Map<ClassInfo, Integer> order, ClassInfo clazz) {
+        Integer ordinal = clazz == null ? null : order.get(clazz);
+        return ordinal == null ? Integer.MAX_VALUE : ordinal.intValue();
+    }
+
+    static ClassInfo owner(AnnotationTarget target) {
+        if (target == null) {
+            return null;
+        }
+
+        switch (target.kind()) {
+            case CLASS:
+                return target.asClass();
+            case FIELD:
+                return target.asField().declaringClass();
+            case METHOD:
+                return target.asMethod().declaringClass();
+            case METHOD_PARAMETER:
+                return target.asMethodParameter().method().declaringClass();
+            case RECORD_COMPONENT:
+                return target.asRecordComponent().declaringClass();
+            case TYPE:
+                return owner(target.asType().enclosingTarget());
+            default:
+                return null;
+        }
+    }
+
+    private static void safeClose(ZipFile jar) {
+        try {
+            jar.close();
+        } catch (Exception ignore) {
+        }
+    }
+
+    private static void safeClose(InputStream stream) {
+        try {
+            stream.close();
+        } catch (Exception ignore) {
+        }
+    }
+
+    private interface ClassSource {
+        String name();
+
+        /**
+         * Opens the class file, reading jar entries through the jar handles of the calling worker.
+         */
+        InputStream open(JarHandles jars) throws IOException;
+    }
+
+    private static final class FileSource implements ClassSource {
+        private final File file;
+
+        FileSource(File file) {
+            this.file = file;
+        }
+
+        public String name() {
+            return file.getPath();
+        }
+
+        public InputStream open(JarHandles jars) throws IOException {
+            return new FileInputStream(file);
+        }
+    }
+
+    private static final class JarEntrySource implements ClassSource {
+        private final File jarFile;
+        private final ZipEntry entry;
+
+        JarEntrySource(File jarFile, ZipEntry entry) {
+            this.jarFile = jarFile;
+            this.entry = entry;
+        }
+
+        public String name() {
+            return entry.getName();
+        }
+
+        public InputStream open(JarHandles jars) throws IOException {
+            return jars.get(jarFile).getInputStream(entry);
+        }
+    }
+
+    /**
+     * The jar files opened by one worker, which are kept open until the worker is done.
+     */
+    private static final class JarHandles {
+        private final Map<File, ZipFile> jars = new LinkedHashMap<File, ZipFile>();
+
+        ZipFile get(File jarFile) throws IOException {
+            ZipFile jar = jars.get(jarFile);
+            if (jar == null) {
+                jar = new ZipFile(jarFile);
+                jars.put(jarFile, jar);
+            }
+            return jar;
+        }
+
+        void close() {
+            for (ZipFile jar : jars.values()) {
+                safeClose(jar);
+            }
+            jars.clear();
+        }
+    }
+
+    private static final class Failure {
+        private final int ordinal;
+        private final String name;
+        private final Throwable cause;
+
+        Failure(int ordinal, String name, Throwable cause) {
+            this.ordinal = ordinal;
+            this.name = name;
+            this.cause = cause;
+        }
+    }
+
+    private static final class WorkerResult {
+        private final Index index;
+        private final Map<ClassInfo, Integer> order;
+        private final List<Failure> failures;
+
+        WorkerResult(Index index, Map<ClassInfo, Integer> order, List<Failure> failures) {
+            this.index = index;
+            this.order = order;
+            this.failures = failures;
+        }
+    }
+
+    /**
+     * Claims batches of consecutive sources until none remain, indexing them all with the
+     * same {@code Indexer}. The position of each indexed class in the overall source list
+     * is recorded, so that the merge can restore the sequential ordering.
+     */
+    private static final class Worker implements Callable<WorkerResult> {
+        private final List<ClassSource> sources;
+        private final AtomicInteger nextBatch;
+        private final IndexerOptions options;
+        private final NameTable sharedNames;
+
+        Worker(List<ClassSource> sources, AtomicInteger nextBatch, IndexerOptions options, NameTable sharedNames) {
+            this.sources = sources;
+            this.nextBatch = nextBatch;
+            this.options = options;
+            this.sharedNames = sharedNames;
+        }
+
+        public WorkerResult call() throws IOException {
+            Indexer indexer = new Indexer(options, sharedNames);
+            Map<ClassInfo, Integer> order = new IdentityHashMap<ClassInfo, Integer>();
+            JarHandles jars = new JarHandles();
+            List<Failure> failures = new ArrayList<Failure>();
+
+            try {
+                int start;
+                while ((start = nextBatch.getAndIncrement() * BATCH_SIZE) < sources.size()) {
+                    int end = Math.min(start + BATCH_SIZE, sources.size());
+                    for (int i = start; i < end; i++) {
+                        ClassSource source = sources.get(i);
+                        try {
+                            InputStream stream = source.open(jars);
+                            try {
+                                ClassInfo info = indexer.index(stream);
+                                if (info != null) {
+                                    order.put(info, Integer.valueOf(i));
+                                }
+                            } finally {
+                                safeClose(stream);
+                            }
+                        } catch (Exception e) {
+                            failures.add(new Failure(i, source.name(), e));
+                        }
+                    }
+                }
+            } finally {
+                jars.close();
+            }
+
+            return new WorkerResult(indexer.complete(), order, failures);
+        }
+    }
+
+    private static final class WorkerThreadFactory implements ThreadFactory {
+        private final AtomicInteger count = new AtomicInteger();
+
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "jandex-indexer-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,427 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2021 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.jandex;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Comparator;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+/**
+ * Copies the entries of a jar file to a new file without recompressing them, and appends a new
+ * entry. The local records of the entries, which hold the compressed data, are transferred
+ * verbatim between the file channels; only the local header offsets in the central directory
+ * change. While the entries are copied, class file entries can be handed to a {@link ClassHandler},
+ * which avoids reading the jar a second time through a {@code JarFile}.
+ *
+ * <p>Only plain archives are supported: archives using the zip64 extensions, split archives,
+ * archives with encrypted entries or with class files compressed by a method other than deflate
+ * are rejected by {@link #open(File)}, so that the caller can fall back to a regular copy.</p>
+ *
+ * <p><b>Thread-Safety</b></p>
+ * This class is not thread-safe.
+ *
+ */
+final class RawJarCopier implements Closeable {
+    private static final int LOCAL_HEADER = 0x04034b50;
+    private static final int CENTRAL_HEADER = 0x02014b50;
+    private static final int END_HEADER = 0x06054b50;
+    private static final int LOCAL_HEADER_SIZE = 30;
+    private static final int CENTRAL_HEADER_SIZE = 46;
+    private static final int END_HEADER_SIZE = 22;
+    private static final int MAX_COMMENT_SIZE = 0xFFFF;
+    private static final long MAX_SIZE = 0xFFFFFFFFL;
+    private static final int MAX_ENTRIES = 0xFFFF;
+    private static final int STORED = 0;
+    private static final int DEFLATED = 8;
+    private static final int VERSION = 20;
+
+    /**
+     * Receives the class file entries of the copied jar.
+     */
+    interface ClassHandler {
+        void handleClass(String name, ByteBuffer classData);
+    }
+
+    private static final class Entry {
+        private final String name;
+        private final int centralPosition;
+        private final int centralLength;
+        private final int method;
+        private final long compressedSize;
+        private final long size;
+        private final long offset;
+        private long dataOffset;
+        private long end;
+        private long newOffset = -1;
+
+        Entry(String name, int centralPosition, int centralLength, int method, long compressedSize, long size, long offset) {
+            this.name = name;
+            this.centralPosition = centralPosition;
+            this.centralLength = centralLength;
+            this.method = method;
+            this.compressedSize = compressedSize;
+            this.size = size;
+            this.offset = offset;
+        }
+    }
+
+    private final RandomAccessFile file;
+    private final FileChannel channel;
+    private final ByteBuffer centralDirectory;
+    private final Entry[] entries;
+    private final long firstOffset;
+    private final byte[] comment;
+    private final Inflater inflater = new Inflater(true);
+    private byte[] compressed = new byte[8192];
+    private byte[] inflated = new byte[8192];
+    private long written;
+
+    private RawJarCopier(RandomAccessFile file, ByteBuffer centralDirectory, Entry[] entries, long firstOffset, byte[] comment) {
+        this.file = file;
+        this.channel = file.getChannel();
+        this.centralDirectory = centralDirectory;
+        this.entries = entries;
+        this.firstOffset = firstOffset;
+        this.comment = comment;
+    }
+
+    /**
+     * Opens a jar file for copying.
+     *
+     * @param jarFile the jar file
+     * @return the copier, or null if the layout of the archive is not supported
+     * @throws IOException if the jar file could not be read
+     */
+    static RawJarCopier open(File jarFile) throws IOException {
+        RandomAccessFile file = new RandomAccessFile(jarFile, "r");
+        RawJarCopier copier = null;
+        try {
+            copier = readCentralDirectory(file);
+            return copier;
+        } finally {
+            if (copier == null) {
+                file.close();
+            }
+        }
+    }
+
+    private static RawJarCopier readCentralDirectory(RandomAccessFile file) throws IOException {
+        FileChannel channel = file.getChannel();
+        long size = channel.size();
+        if (size < END_HEADER_SIZE || size > MAX_SIZE) {
+            return null;
+        }
+
+        // The end record is followed by a variable length comment, so search backwards for it
+        int tailLength = (int) Math.min(size, END_HEADER_SIZE + MAX_COMMENT_SIZE);
+        ByteBuffer tail = read(channel, size - tailLength, tailLength);
+        int end = -1;
+        for (int i = tailLength - END_HEADER_SIZE; i >= 0; i--) {
+            if (tail.getInt(i) == END_HEADER && i + END_HEADER_SIZE + (tail.getShort(i + 20) & 0xFFFF) == tailLength) {
+                end = i;
+                break;
+            }
+        }
+        if (end < 0) {
+            throw new ZipException("End of central directory not found");
+        }
+
+        int disk = tail.getShort(end + 4) & 0xFFFF;
+        int centralDisk = tail.getShort(end + 6) & 0xFFFF;
+        int diskEntries = tail.getShort(end + 8) & 0xFFFF;
+        int totalEntries = tail.getShort(end + 10) & 0xFFFF;
+        long centralSize = tail.getInt(end + 12) & MAX_SIZE;
+        long centralOffset = tail.getInt(end + 16) & MAX_SIZE;
+        if (disk != 0 || centralDisk != 0 || diskEntries != totalEntries || totalEntries == MAX_ENTRIES) {
+            return null;
+        }
+        // also rejects a zip64 end locator or any other data between the central directory and its end
+        if (centralOffset + centralSize != size - tailLength + end) {
+            return null;
+        }
+
+        byte[] comment = new byte[tailLength - end - END_HEADER_SIZE];
+        tail.position(end + END_HEADER_SIZE);
+        tail.get(comment);
+
+        ByteBuffer centralDirectory = read(channel, centralOffset, (int) centralSize);
+        Entry[] entries = new Entry[totalEntries];
+        int position = 0;
+        for (int i = 0; i < totalEntries; i++) {
+            if (position + CENTRAL_HEADER_SIZE > centralSize || centralDirectory.getInt(position) != CENTRAL_HEADER) {
+                throw new ZipException("Invalid central directory header");
+            }
+            int flags = centralDirectory.getShort(position + 8) & 0xFFFF;
+            int method = centralDirectory.getShort(position + 10) & 0xFFFF;
+            long compressedSize = centralDirectory.getInt(position + 20) & MAX_SIZE;
+            long entrySize = centralDirectory.getInt(position + 24) & MAX_SIZE;
+            int nameLength = centralDirectory.getShort(position + 28) & 0xFFFF;
+            int extraLength = centralDirectory.getShort(position + 30) & 0xFFFF;
+            int commentLength = centralDirectory.getShort(position + 32) & 0xFFFF;
+            long offset = centralDirectory.getInt(position + 42) & MAX_SIZE;
+            int length = CENTRAL_HEADER_SIZE + nameLength + extraLength + commentLength;
+            if (position + length > centralSize) {
+                throw new ZipException("Invalid central directory header");
+            }
+
+            byte[] name = new byte[nameLength];
+            centralDirectory.position(position + CENTRAL_HEADER_SIZE);
+            centralDirectory.get(name);
+            Entry entry = new Entry(new String(name, "UTF-8"), position, length, method, compressedSize, entrySize, offset);
+
+            boolean encrypted = (flags & 1) != 0;
+            boolean zip64 = compressedSize == MAX_SIZE || entrySize == MAX_SIZE || offset == MAX_SIZE;
+            boolean unsupportedClass = entry.name.endsWith(".class") && method != STORED && method != DEFLATED;
+            if (encrypted || zip64 || unsupportedClass) {
+                return null;
+            }
+
+            entries[i] = entry;
+            position += length;
+        }
+
+        // The local record of an entry extends up to the next one, which covers any data descriptor
+        Entry[] sorted = entries.clone();
+        Arrays.sort(sorted, new Comparator<Entry>() {
+            public int compare(Entry o1, Entry o2) {
+                return o1.offset < o2.offset ? -1 : o1.offset == o2.offset ? 0 : 1;
+            }
+        });
+        ByteBuffer header = ByteBuffer.allocate(LOCAL_HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        for (int i = 0; i < sorted.length; i++) {
+            Entry entry = sorted[i];
+            entry.end = i + 1 < sorted.length ? sorted[i + 1].offset : centralOffset;
+
+            header.clear();
+            readFully(channel, header, entry.offset);
+            if (header.getInt(0) != LOCAL_HEADER) {
+                return null;
+            }
+            entry.dataOffset = entry.offset + LOCAL_HEADER_SIZE + (header.getShort(26) & 0xFFFF) + (header.getShort(28) & 0xFFFF);
+            if (entry.dataOffset + entry.compressedSize > entry.end) {
+                return null;
+            }
+        }
+
+        long firstOffset = sorted.length > 0 ? sorted[0].offset : centralOffset;
+        return new RawJarCopier(file, centralDirectory, entries, firstOffset, comment);
+    }
+
+    /**
+     * Copies every entry but the excluded one, in the order of the central directory. Any data preceding
+     * the first entry is copied as well. Class file entries are passed to the handler, if there is one.
+     *
+     * @param target the channel of the new jar file, positioned at its start
+     * @param excluded the name of the entry to leave out
+     * @param handler the handler of class file entries, may be null
+     * @throws IOException if reading or writing fails
+     */
+    void copyEntries(FileChannel target, String excluded, ClassHandler handler) throws IOException {
+        long rangeStart = 0;
+        long rangeEnd = firstOffset;
+        written = firstOffset;
+
+        for (Entry entry : entries) {
+            if (entry.name.equals(excluded)) {
+                continue;
+            }
+
+            // neighbouring entries are transferred at once
+            if (entry.offset != rangeEnd) {
+                transfer(rangeStart, rangeEnd - rangeStart, target);
+                rangeStart = entry.offset;
+            }
+            rangeEnd = entry.end;
+            entry.newOffset = written;
+            written += entry.end - entry.offset;
+
+            if (handler != null && entry.name.endsWith(".class")) {
+                handler.handleClass(entry.name, readEntry(entry));
+            }
+        }
+        transfer(rangeStart, rangeEnd - rangeStart, target);
+    }
+
+    /**
+     * Appends a deflated entry after the copied entries, followed by the central directory
+     * and its end record, which keeps the comment of the original jar.
+     *
+     * @param target the channel of the new jar file, positioned after the copied entries
+     * @param name the name of the new entry
+     * @param content the uncompressed content of the new entry
+     * @throws IOException if writing fails
+     */
+    void finish(FileChannel target, String name, byte[] content) throws IOException {
+        byte[] nameBytes = name.getBytes("UTF-8");
+        byte[] data = deflate(content);
+        CRC32 crc = new CRC32();
+        crc.update(content);
+        int time = dosTime();
+
+        long localOffset = written;
+        ByteBuffer local = ByteBuffer.allocate(LOCAL_HEADER_SIZE + nameBytes.length).order(ByteOrder.LITTLE_ENDIAN);
+        local.putInt(LOCAL_HEADER).putShort((short) VERSION).putShort((short) 0).putShort((short) DEFLATED)
+                .putInt(time).putInt((int) crc.getValue()).putInt(data.length).putInt(content.length)
+                .putShort((short) nameBytes.length).putShort((short) 0).put(nameBytes);
+        write(target, (ByteBuffer) local.flip());
+        write(target, ByteBuffer.wrap(data));
+
+        long centralOffset = written;
+        int count = 0;
+        for (Entry entry : entries) {
+            if (entry.newOffset < 0) {
+                continue;
+            }
+            ByteBuffer source = centralDirectory.duplicate();
+            source.limit(entry.centralPosition + entry.centralLength).position(entry.centralPosition);
+            ByteBuffer record = ByteBuffer.allocate(entry.centralLength).order(ByteOrder.LITTLE_ENDIAN);
+            record.put(source).putInt(42, (int) entry.newOffset);
+            write(target, (ByteBuffer) record.flip());
+            count++;
+        }
+
+        ByteBuffer central = ByteBuffer.allocate(CENTRAL_HEADER_SIZE + nameBytes.length).order(ByteOrder.LITTLE_ENDIAN);
+        central.putInt(CENTRAL_HEADER).putShort((short) VERSION).putShort((short) VERSION).putShort((short) 0)
+                .putShort((short) DEFLATED).putInt(time).putInt((int) crc.getValue()).putInt(data.length)
+                .putInt(content.length).putShort((short) nameBytes.length).putShort((short) 0).putShort((short) 0)
+                .putShort((short) 0).putShort((short) 0).putInt(0).putInt((int) localOffset).put(nameBytes);
+        write(target, (ByteBuffer) central.flip());
+        count++;
+
+        long centralSize = written - centralOffset;
+        if (count > MAX_ENTRIES || written > MAX_SIZE) {
+            throw new ZipException("The archive requires zip64 extensions");
+        }
+
+        ByteBuffer endRecord = ByteBuffer.allocate(END_HEADER_SIZE + comment.length).order(ByteOrder.LITTLE_ENDIAN);
+        endRecord.putInt(END_HEADER).putShort((short) 0).putShort((short) 0).putShort((short) count)
+                .putShort((short) count).putInt((int) centralSize).putInt((int) centralOffset)
+                .putShort((short) comment.length).put(comment);
+        write(target, (ByteBuffer) endRecord.flip());
+    }
+
+    public void close() throws IOException {
+        inflater.end();
+        file.close();
+    }
+
+    private ByteBuffer readEntry(Entry entry) throws IOException {
+        int compressedSize = (int) entry.compressedSize;
+        if (compressed.length < compressedSize) {
+            compressed = new byte[compressedSize];
+        }
+        readFully(channel, ByteBuffer.wrap(compressed, 0, compressedSize), entry.dataOffset);
+        if (entry.method == STORED) {
+            return ByteBuffer.wrap(compressed, 0, compressedSize);
+        }
+
+        int size = (int) entry.size;
+        if (inflated.length < size) {
+            inflated = new byte[size];
+        }
+        inflater.reset();
+        inflater.setInput(compressed, 0, compressedSize);
+        int length = 0;
+        try {
+            while (!inflater.finished() && length < size) {
+                int n = inflater.inflate(inflated, length, size - length);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                length += n;
+            }
+        } catch (DataFormatException e) {
+            throw new ZipException("Invalid compressed data in " + entry.name + ": " + e.getMessage());
+        }
+        if (length != size) {
+            throw new ZipException("Invalid entry size of " + entry.name);
+        }
+        return ByteBuffer.wrap(inflated, 0, length);
+    }
+
+    private static byte[] deflate(byte[] content) {
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        try {
+            deflater.setInput(content);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(content.length / 2 + 64);
+            byte[] buf = new byte[8192];
+            while (!deflater.finished()) {
+                out.write(buf, 0, deflater.deflate(buf));
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static int dosTime() {
+        Calendar now = Calendar.getInstance();
+        int date = (now.get(Calendar.YEAR) - 1980) << 9 | (now.get(Calendar.MONTH) + 1) << 5 | now.get(Calendar.DAY_OF_MONTH);
+        int time = now.get(Calendar.HOUR_OF_DAY) << 11 | now.get(Calendar.MINUTE) << 5 | now.get(Calendar.SECOND) >> 1;
+        return date << 16 | time;
+    }
+
+    private void transfer(long position, long count, FileChannel target) throws IOException {
+        while (count > 0) {
+            long n = channel.transferTo(position, count, target);
+            if (n <= 0) {
+                throw new EOFException();
+            }
+            position += n;
+            count -= n;
+        }
+    }
+
+    private void write(FileChannel target, ByteBuffer buffer) throws IOException {
+        written += buffer.remaining();
+        while (buffer.hasRemaining()) {
+            target.write(buffer);
+        }
+    }
+
+    private static ByteBuffer read(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+        readFully(channel, buffer, position);
+        return buffer;
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int n = channel.read(buffer, position);
+            if (n < 0) {
+                throw new EOFException();
+            }
+            position += n;
+        }
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2021 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jboss.jandex;
+
+/**
+ * Identifies the state of the class file an indexed class was read from, so that a later
+ * incremental run can tell whether the class file has changed. For class files in a directory
+ * the stamp is the modification time; for jar entries it is the CRC-32 of the entry.
+ *
+ * @see IncrementalIndexer
+ */
+final class SourceFingerprint {
+    private final String path;
+    private final long size;
+    private final long stamp;
+
+    SourceFingerprint(String path, long size, long stamp) {
+        this.path = path;
+        this.size = size;
+        this.stamp = stamp;
+    }
+
+    String path() {
+        return path;
+    }
+
+    long size() {
+        return size;
+    }
+
+    long stamp() {
+        return stamp;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof SourceFingerprint)) {
+            return false;
+        }
+        SourceFingerprint other = (SourceFingerprint) o;
+        return size == other.size && stamp == other.stamp && path.equals(other.path);
+    }
+
+    @Override
+    public int hashCode() {
+        int result = path.hashCode();
+        result = 31 * result + (int) (size ^ (size >>> 32));
+        result = 31 * result + (int) (stamp ^ (stamp >>> 32));
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return path + " (" + size + " bytes, " + stamp + ")";
+    }
+}
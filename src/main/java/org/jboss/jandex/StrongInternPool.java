@@ -221,6 +221,18 @@ class StrongInternPool<E> implements Cloneable, Serializable {
         }
     }
 
+    /**
+     * Returns the stored object which is equal to the specified one, without storing it.
+     *
+     * @param entry the object to look up
+     * @return the stored equivalent object, or null if there is none
+     */
+    @SuppressWarnings("unchecked")
+    public E get(E entry) {
+        int offset = offset(entry);
+        return offset < 0 ? null : (E) unmaskNull(table[offset]);
+    }
+
     /***
      * Internalizes the specified object by always returning the first ever stored.
      * Equivalent objects (via .equals) but with different identity (aka duplicates)
@@ -0,0 +1,114 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2021 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jboss.jandex.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import org.jboss.jandex.AnnotationInstance;
+import org.jboss.jandex.AnnotationTarget;
+import org.jboss.jandex.ClassInfo;
+import org.jboss.jandex.CompositeIndex;
+import org.jboss.jandex.DotName;
+import org.jboss.jandex.Index;
+import org.jboss.jandex.IndexView;
+import org.jboss.jandex.test.util.MappedIndexes;
+import org.junit.Test;
+
+public class AnnotationTargetKindTestCase {
+
+    private static final DotName MARKER = DotName.createSimple(Marker.class.getName());
+
+    @Retention(RetentionPolicy.RUNTIME)
+    public @interface Marker {
+    }
+
+    @Marker
+    static class First {
+        @Marker
+        int field;
+
+        @Marker
+        void method(@Marker int parameter) {
+        }
+
+        void other(@Marker String parameter) {
+        }
+    }
+
+    @Marker
+    static class Second {
+        @Marker
+        void method() {
+        }
+    }
+
+    @Test
+    public void testIndex() throws IOException {
+        verify(Index.of(First.class, Second.class));
+    }
+
+    @Test
+    public void testCompositeIndex() throws IOException {
+        verify(CompositeIndex.create(Index.of(First.class), Index.of(Second.class)));
+    }
+
+    @Test
+    public void testLazyIndex() throws IOException {
+        verify(MappedIndexes.read(Index.of(First.class, Second.class)));
+    }
+
+    @Test
+    public void testClassAnnotations() throws IOException {
+        Index index = Index.of(First.class);
+        ClassInfo first = index.getClassByName(DotName.createSimple(First.class.getName()));
+        Collection<AnnotationInstance> annotations = first.classAnnotations();
+        assertEquals(1, annotations.size());
+        assertEquals(MARKER, annotations.iterator().next().name());
+        assertTrue(annotations.iterator().next().target() == first);
+    }
+
+    private static void verify(IndexView index) {
+        assertEquals(7, index.getAnnotations(MARKER).size());
+        assertEquals(2, index.getAnnotations(MARKER, AnnotationTarget.Kind.CLASS).size());
+        assertEquals(1, index.getAnnotations(MARKER, AnnotationTarget.Kind.FIELD).size());
+        assertEquals(2, index.getAnnotations(MARKER, AnnotationTarget.Kind.METHOD).size());
+        assertEquals(2, index.getAnnotations(MARKER, AnnotationTarget.Kind.METHOD_PARAMETER).size());
+        assertEquals(0, index.getAnnotations(MARKER, AnnotationTarget.Kind.TYPE).size());
+        assertEquals(0, index.getAnnotations(DotName.createSimple("org.example.Unknown"), AnnotationTarget.Kind.CLASS).size());
+
+        // every instance is in the list of its kind, in the order of the unfiltered list
+        for (AnnotationTarget.Kind kind : AnnotationTarget.Kind.values()) {
+            List<AnnotationInstance> expected = new ArrayList<AnnotationInstance>();
+            for (AnnotationInstance instance : index.getAnnotations(MARKER)) {
+                if (instance.target().kind() == kind) {
+                    expected.add(instance);
+                }
+            }
+            assertEquals(expected, new ArrayList<AnnotationInstance>(index.getAnnotations(MARKER, kind)));
+        }
+    }
+}
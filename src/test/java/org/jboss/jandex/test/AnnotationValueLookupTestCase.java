@@ -0,0 +1,130 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2021 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jboss.jandex.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.util.Collection;
+
+import org.jboss.jandex.AnnotationInstance;
+import org.jboss.jandex.AnnotationTarget;
+import org.jboss.jandex.AnnotationValue;
+import org.jboss.jandex.CompositeIndex;
+import org.jboss.jandex.DotName;
+import org.jboss.jandex.Index;
+import org.jboss.jandex.IndexView;
+import org.jboss.jandex.Type;
+import org.jboss.jandex.test.util.MappedIndexes;
+import org.junit.Test;
+
+public class AnnotationValueLookupTestCase {
+
+    private static final DotName MAPPED = DotName.createSimple(Mapped.class.getName());
+    private static final DotName ELEMENT_TYPE = DotName.createSimple(ElementType.class.getName());
+
+    @Retention(RetentionPolicy.RUNTIME)
+    public @interface Mapped {
+        String value() default "";
+
+        ElementType kind() default ElementType.TYPE;
+
+        Class<?> type() default Object.class;
+
+        String[] tags() default {};
+
+        int order() default 0;
+    }
+
+    @Mapped("first")
+    static class First {
+        @Mapped(value = "second", kind = ElementType.FIELD, type = String.class, tags = {"a", "b"})
+        int field;
+
+        @Mapped(value = "first", kind = ElementType.METHOD, tags = {"b", "b"}, order = 1)
+        void method() {
+        }
+    }
+
+    @Mapped(type = String.class, tags = "a")
+    static class Second {
+    }
+
+    @Test
+    public void testIndex() throws IOException {
+        verify(Index.of(First.class, Second.class));
+    }
+
+    @Test
+    public void testCompositeIndex() throws IOException {
+        verify(CompositeIndex.create(Index.of(First.class), Index.of(Second.class)));
+    }
+
+    @Test
+    public void testLazyIndex() throws IOException {
+        verify(MappedIndexes.read(Index.of(First.class, Second.class)));
+    }
+
+    @Test
+    public void testUnsupportedValue() throws IOException {
+        Index index = Index.of(First.class);
+        try {
+            index.getAnnotationsWithValue(MAPPED, AnnotationValue.createIntegerValue("order", 1));
+            fail("Expected IllegalArgumentException");
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+
+    private static void verify(IndexView index) {
+        assertEquals(2, index.getAnnotationsWithValue(MAPPED, AnnotationValue.createStringValue("value", "first")).size());
+        assertEquals(1, index.getAnnotationsWithValue(MAPPED, AnnotationValue.createStringValue("value", "second")).size());
+        assertEquals(0, index.getAnnotationsWithValue(MAPPED, AnnotationValue.createStringValue("value", "third")).size());
+
+        // the member name is part of the key
+        assertEquals(0, index.getAnnotationsWithValue(MAPPED, AnnotationValue.createStringValue("tags", "first")).size());
+
+        Collection<AnnotationInstance> fields = index.getAnnotationsWithValue(MAPPED,
+                AnnotationValue.createEnumValue("kind", ELEMENT_TYPE, "FIELD"));
+        assertEquals(1, fields.size());
+        assertEquals("second", fields.iterator().next().value().asString());
+
+        // defaults are not known to the index
+        assertEquals(0, index.getAnnotationsWithValue(MAPPED,
+                AnnotationValue.createEnumValue("kind", ELEMENT_TYPE, "TYPE")).size());
+
+        Type string = Type.create(DotName.createSimple(String.class.getName()), Type.Kind.CLASS);
+        assertEquals(2, index.getAnnotationsWithValue(MAPPED, AnnotationValue.createClassValue("type", string)).size());
+
+        // array members match any element, and an instance is returned once
+        assertEquals(2, index.getAnnotationsWithValue(MAPPED, AnnotationValue.createStringValue("tags", "a")).size());
+        Collection<AnnotationInstance> tagged = index.getAnnotationsWithValue(MAPPED, AnnotationValue.createStringValue("tags", "b"));
+        assertEquals(2, tagged.size());
+        for (AnnotationInstance instance : tagged) {
+            assertTrue(instance.target().kind() != AnnotationTarget.Kind.CLASS);
+        }
+
+        assertEquals(0, index.getAnnotationsWithValue(DotName.createSimple("org.example.Unknown"),
+                AnnotationValue.createStringValue("value", "first")).size());
+    }
+}
@@ -41,6 +41,7 @@ import java.lang.annotation.Target;
 import java.lang.reflect.Modifier;
 import java.net.URISyntaxException;
 import java.net.URL;
+import java.nio.ByteBuffer;
 import java.nio.file.FileVisitResult;
 import java.nio.file.FileVisitor;
 import java.nio.file.Files;
@@ -192,6 +193,59 @@ public class BasicTestCase {
         index.printSubclasses();
     }
 
+    @Test
+    public void testIndexerFromArrayAndBuffer() throws IOException {
+        Indexer indexer = new Indexer();
+        indexer.index(classBytes(DummyClass.class));
+
+        // Heap buffer covering part of a larger array
+        byte[] bytes = classBytes(TestAnnotation.class);
+        byte[] padded = new byte[bytes.length + 20];
+        System.arraycopy(bytes, 0, padded, 10, bytes.length);
+        ByteBuffer buffer = ByteBuffer.wrap(padded, 10, bytes.length);
+        indexer.index(buffer.slice());
+        assertEquals(10, buffer.position());
+
+        indexer.index(ByteBuffer.wrap(padded, 10, bytes.length));
+
+        bytes = classBytes(DummyClass.Nested.class);
+        ByteBuffer direct = ByteBuffer.allocateDirect(bytes.length);
+        direct.put(bytes).flip();
+        indexer.index(direct);
+
+        indexer.index(classBytes(Enum.class));
+        Index index = indexer.complete();
+
+        verifyDummy(index, true);
+    }
+
+    @Test
+    public void testIndexerFromTruncatedArray() throws IOException {
+        byte[] bytes = classBytes(DummyClass.class);
+        final byte[] truncated = Arrays.copyOf(bytes, 40);
+        assertThrows(IOException.class, new ThrowingRunnable() {
+            @Override
+            public void run() throws Throwable {
+                new Indexer().index(truncated);
+            }
+        });
+    }
+
+    private byte[] classBytes(Class<?> klass) throws IOException {
+        InputStream stream = getClass().getClassLoader().getResourceAsStream(klass.getName().replace('.', '/') + ".class");
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int read;
+            while ((read = stream.read(buffer)) > 0) {
+                out.write(buffer, 0, read);
+            }
+            return out.toByteArray();
+        } finally {
+            stream.close();
+        }
+    }
+
     @Test
     public void testIndexOfDirectory() throws IOException, URISyntaxException {
         URL testLocation = getClass().getResource(getClass().getSimpleName() + ".class");
@@ -405,7 +459,7 @@ public class BasicTestCase {
     @Test(expected = IllegalArgumentException.class)
     public void testNullStream() throws IOException {
         Indexer indexer = new Indexer();
-        indexer.index(null);
+        indexer.index((InputStream) null);
     }
 
     @Test(expected = IllegalArgumentException.class)
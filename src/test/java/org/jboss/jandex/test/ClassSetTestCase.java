@@ -0,0 +1,174 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2021 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jboss.jandex.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.reflect.Modifier;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.jboss.jandex.ClassInfo;
+import org.jboss.jandex.ClassSet;
+import org.jboss.jandex.DotName;
+import org.jboss.jandex.Index;
+import org.junit.Test;
+
+public class ClassSetTestCase {
+
+    private static final DotName SERVICE = DotName.createSimple(Service.class.getName());
+    private static final DotName MARKER = DotName.createSimple(Marker.class.getName());
+
+    @Retention(RetentionPolicy.RUNTIME)
+    public @interface Marker {
+    }
+
+    public interface Service {
+    }
+
+    @Marker
+    public abstract static class AbstractService implements Service {
+    }
+
+    @Marker
+    public static class MarkedService extends AbstractService {
+    }
+
+    public static class PlainService extends AbstractService {
+    }
+
+    @Marker
+    public static class Unrelated {
+    }
+
+    private static Index index() throws IOException {
+        return Index.of(Marker.class, Service.class, AbstractService.class, MarkedService.class,
+                PlainService.class, Unrelated.class);
+    }
+
+    @Test
+    public void testOrdinals() throws IOException {
+        Index index = index();
+        Set<Integer> seen = new HashSet<Integer>();
+        for (ClassInfo clazz : index.getKnownClasses()) {
+            int ordinal = index.getClassOrdinal(clazz.name());
+            assertTrue(ordinal >= 0 && ordinal < index.getKnownClasses().size());
+            assertTrue(seen.add(ordinal));
+            assertSame(clazz, index.getClassByOrdinal(ordinal));
+        }
+        assertEquals(-1, index.getClassOrdinal(DotName.createSimple("org.example.Unknown")));
+        assertEquals(index.getKnownClasses().size(), index.getKnownClassSet().size());
+    }
+
+    @Test
+    public void testQueries() throws IOException {
+        Index index = index();
+        assertEquals(index.getAllKnownImplementors(SERVICE), index.getAllKnownImplementorSet(SERVICE));
+        assertEquals(index.getAllKnownSubclasses(DotName.createSimple(AbstractService.class.getName())),
+                index.getAllKnownSubclassSet(DotName.createSimple(AbstractService.class.getName())));
+        assertEquals(names(AbstractService.class, MarkedService.class, Unrelated.class),
+                names(index.getAnnotatedClassSet(MARKER)));
+        assertEquals(names(Marker.class, Service.class), names(index.getClassSetWithModifiers(Modifier.INTERFACE)));
+        assertTrue(index.getAnnotatedClassSet(DotName.createSimple("org.example.Unknown")).isEmpty());
+    }
+
+    @Test
+    public void testHierarchySets() throws Exception {
+        assertHierarchySets(index());
+        assertHierarchySets(index().withHierarchyClosure());
+
+        // Enough classes to span several words
+        File root = new File(ClassSetTestCase.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+        Index index = Index.of(new File(root, "org/jboss/jandex/test"));
+        assertTrue(index.getKnownClasses().size() > 64);
+        assertHierarchySets(index);
+        assertHierarchySets(index.withHierarchyClosure());
+    }
+
+    private static void assertHierarchySets(Index index) {
+        assertEquals(new HashSet<ClassInfo>(index.getKnownClasses()), index.getKnownClassSet());
+        DotName object = DotName.createSimple("java.lang.Object");
+        assertEquals(new HashSet<ClassInfo>(index.getAllKnownSubclasses(object)), index.getAllKnownSubclassSet(object));
+        for (ClassInfo clazz : index.getKnownClasses()) {
+            assertEquals(new HashSet<ClassInfo>(index.getAllKnownSubclasses(clazz.name())),
+                    index.getAllKnownSubclassSet(clazz.name()));
+            assertEquals(new HashSet<ClassInfo>(index.getAllKnownImplementors(clazz.name())),
+                    index.getAllKnownImplementorSet(clazz.name()));
+        }
+        assertTrue(index.getAllKnownImplementorSet(DotName.createSimple("org.example.Unknown")).isEmpty());
+    }
+
+    @Test
+    public void testSetAlgebra() throws IOException {
+        Index index = index();
+        ClassSet implementors = index.getAllKnownImplementorSet(SERVICE);
+        ClassSet marked = index.getAnnotatedClassSet(MARKER);
+        ClassSet abstracts = index.getClassSetWithModifiers(Modifier.ABSTRACT);
+
+        assertEquals(names(MarkedService.class), names(implementors.and(marked).andNot(abstracts)));
+        assertEquals(names(AbstractService.class, MarkedService.class, PlainService.class, Unrelated.class),
+                names(implementors.or(marked)));
+        assertEquals(names(Unrelated.class), names(marked.andNot(implementors)));
+
+        ClassInfo plain = index.getClassByName(DotName.createSimple(PlainService.class.getName()));
+        assertTrue(implementors.contains(plain));
+        assertFalse(marked.contains(plain));
+        assertTrue(implementors.containsOrdinal(index.getClassOrdinal(plain.name())));
+    }
+
+    @Test
+    public void testDifferentIndexes() throws IOException {
+        try {
+            index().getKnownClassSet().and(index().getKnownClassSet());
+            fail("Expected IllegalArgumentException");
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testUnmodifiable() throws IOException {
+        Index index = index();
+        index.getKnownClassSet().remove(index.getClassByName(SERVICE));
+    }
+
+    private static Set<String> names(Class<?>... classes) {
+        Set<String> names = new HashSet<String>();
+        for (Class<?> clazz : classes) {
+            names.add(clazz.getName());
+        }
+        return names;
+    }
+
+    private static Set<String> names(ClassSet set) {
+        Set<String> names = new HashSet<String>();
+        for (ClassInfo clazz : set) {
+            names.add(clazz.name().toString());
+        }
+        assertEquals(set.size(), names.size());
+        return names;
+    }
+}
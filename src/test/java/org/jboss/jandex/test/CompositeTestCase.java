@@ -19,6 +19,9 @@
 package org.jboss.jandex.test;
 
 import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertNotSame;
+import static junit.framework.Assert.assertNull;
+import static junit.framework.Assert.assertSame;
 
 import java.util.Collection;
 import java.util.Collections;
@@ -65,6 +68,38 @@ public class CompositeTestCase {
         assertEquals(7, verifyClasses(index.getAllKnownSubclasses(OBJECT_NAME)));
     }
 
+    @Test
+    public void testCachedComposite() {
+        Index barIndex = createIndex(BAR_NAME);
+        Index fooIndex = createIndex(FOO_NAME);
+        DotName annotationName = DotName.createSimple("foo.BarAnno");
+
+        CompositeIndex index = CompositeIndex.create(fooIndex, barIndex);
+        CompositeIndex cached = CompositeIndex.createCached(2, fooIndex, barIndex);
+        assertEquals(index.getAnnotations(annotationName), cached.getAnnotations(annotationName));
+        assertEquals(7, verifyClasses(cached.getAllKnownSubclasses(OBJECT_NAME)));
+        assertEquals(index.getKnownDirectSubclasses(BASE_NAME), cached.getKnownDirectSubclasses(BASE_NAME));
+        assertSame(fooIndex.getClassByName(FOO_NAME), cached.getClassByName(FOO_NAME));
+        assertSame(barIndex.getClassByName(BAR_NAME), cached.getClassByName(BAR_NAME));
+        assertNull(cached.getClassByName(OBJECT_NAME));
+
+        // Repeated queries are answered from the cache
+        Collection<ClassInfo> subclasses = cached.getAllKnownSubclasses(OBJECT_NAME);
+        assertSame(subclasses, cached.getAllKnownSubclasses(OBJECT_NAME));
+
+        // Only the two most recently used results are kept
+        cached.getAnnotations(annotationName);
+        cached.getKnownDirectSubclasses(BASE_NAME);
+        assertNotSame(subclasses, cached.getAllKnownSubclasses(OBJECT_NAME));
+        assertEquals(7, verifyClasses(cached.getAllKnownSubclasses(OBJECT_NAME)));
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testCachedResultsAreUnmodifiable() {
+        CompositeIndex cached = CompositeIndex.createCached(10, createIndex(FOO_NAME));
+        cached.getAllKnownSubclasses(OBJECT_NAME).clear();
+    }
+
     private int verifyClasses(Collection<ClassInfo> allKnownSubclasses) {
         int hit;
         hit = 0;
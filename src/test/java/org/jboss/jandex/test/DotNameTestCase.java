@@ -21,10 +21,13 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Random;
 import java.util.TreeSet;
 
@@ -135,6 +138,27 @@ public class DotNameTestCase {
         c.verifyAll();
     }
 
+    @Test
+    public void testComparatorWithSharedPrefixes() {
+        List<DotName> names = new ArrayList<DotName>();
+        for (int i = 0; i < 100; i++) {
+            DotName name = createRandomComponentised();
+            names.add(name);
+            names.add(DotName.createComponentized(name, someRandomChars(), r.nextBoolean()));
+            if (name.prefix() != null) {
+                names.add(DotName.createComponentized(name.prefix(), someRandomChars(), r.nextBoolean()));
+            }
+            names.add(DotName.createSimple(name.toString() + someRandomChars()));
+        }
+
+        for (DotName n1 : names) {
+            for (DotName n2 : names) {
+                assertEquals(n1 + " " + n2, Integer.signum(n1.toString().compareTo(n2.toString())),
+                        Integer.signum(n1.compareTo(n2)));
+            }
+        }
+    }
+
     @Test
     public void testCollectionsProperties() {
         for (int i=0; i<500; i++) {
@@ -262,6 +286,39 @@ public class DotNameTestCase {
         assertEquals("$delimiters$.test.$SurroundedByDelimiters$", indexedName.toString());
     }
 
+    @Test
+    public void testIndexedNamesSharePrefixes() throws IOException {
+        Index index = Index.of(DotNameTestCase.class, Test$.class, BasicTestCase.class, BasicTestCase.NestedA.class);
+        DotName outer = index.getClassByName(DotName.createSimple(DotNameTestCase.class.getName())).name();
+        DotName inner = index.getClassByName(DotName.createSimple(Test$.class.getName())).name();
+        DotName other = index.getClassByName(DotName.createSimple(BasicTestCase.class.getName())).name();
+        DotName nested = index.getClassByName(DotName.createSimple(BasicTestCase.NestedA.class.getName())).name();
+
+        assertSame(outer, inner.prefix());
+        assertSame(other, nested.prefix());
+        assertSame(outer.prefix(), other.prefix());
+        assertTrue(inner.isInner());
+        assertFalse(outer.isInner());
+        assertEquals(BasicTestCase.NestedA.class.getName(), nested.toString());
+    }
+
+    @Test
+    public void testCanonicalName() throws IOException {
+        Index index = Index.of(BasicTestCase.DummyClass.class, BasicTestCase.NestedA.class);
+        DotName indexed = index.getClassByName(DotName.createSimple(BasicTestCase.NestedA.class.getName())).name();
+
+        DotName simple = DotName.createSimple(BasicTestCase.NestedA.class.getName());
+        assertSame(indexed, index.canonicalName(simple));
+        assertSame(indexed, index.canonicalName(indexed));
+
+        DotName annotation = index.canonicalName(DotName.createSimple(BasicTestCase.TestAnnotation.class.getName()));
+        assertTrue(annotation.isComponentized());
+        assertSame(annotation, index.getAnnotations(annotation).get(0).name());
+
+        DotName unknown = DotName.createSimple("org.example.Unknown");
+        assertSame(unknown, index.canonicalName(unknown));
+    }
+
     private static DotName createRandomDotName() {
         return r.nextBoolean() ? createRandomComponentised() : createRandomSimple();
     }
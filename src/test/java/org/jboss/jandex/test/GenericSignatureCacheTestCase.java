@@ -0,0 +1,130 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2021 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jboss.jandex.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Field;
+import java.util.List;
+import java.util.Map;
+
+import org.jboss.jandex.ClassInfo;
+import org.jboss.jandex.DotName;
+import org.jboss.jandex.Index;
+import org.jboss.jandex.Indexer;
+import org.jboss.jandex.MethodInfo;
+import org.jboss.jandex.Type;
+import org.junit.Test;
+
+public class GenericSignatureCacheTestCase {
+
+    static class NumberHolder<T extends Number> {
+        List<T> values;
+        List<String> names;
+
+        List<T> values(List<T> defaults) {
+            return values;
+        }
+    }
+
+    static class TextHolder<T extends CharSequence> {
+        List<T> values;
+        List<String> names;
+
+        List<T> values(List<T> defaults) {
+            return values;
+        }
+    }
+
+    static class Plain {
+        List<String> values;
+    }
+
+    @Test
+    public void testSameSignatureInDifferentClasses() throws IOException {
+        Indexer indexer = new Indexer();
+        index(indexer, NumberHolder.class);
+        index(indexer, TextHolder.class);
+        index(indexer, Plain.class);
+        index(indexer, NumberHolder.class);
+        Index index = indexer.complete();
+
+        verifyHolder(index.getClassByName(DotName.createSimple(NumberHolder.class.getName())), Number.class);
+        verifyHolder(index.getClassByName(DotName.createSimple(TextHolder.class.getName())), CharSequence.class);
+
+        ClassInfo plain = index.getClassByName(DotName.createSimple(Plain.class.getName()));
+        assertEquals("java.util.List<java.lang.String>", plain.field("values").type().toString());
+    }
+
+    @Test
+    public void testSignatureWithoutTypeVariablesSharedAcrossClasses() throws Exception {
+        Indexer indexer = new Indexer();
+        index(indexer, NumberHolder.class);
+        int cached = cachedSignatures(indexer);
+
+        // The class signature and the members using T are new, List<String> is found although the type parameters differ
+        index(indexer, TextHolder.class);
+        assertEquals(cached + 3, cachedSignatures(indexer));
+
+        // Found regardless of the class signature parsed before
+        index(indexer, Plain.class);
+        assertEquals(cached + 3, cachedSignatures(indexer));
+
+        Index index = indexer.complete();
+        Type names = index.getClassByName(DotName.createSimple(NumberHolder.class.getName())).field("names").type();
+        assertEquals("java.util.List<java.lang.String>", names.toString());
+        assertSame(names, index.getClassByName(DotName.createSimple(TextHolder.class.getName())).field("names").type());
+        assertSame(names, index.getClassByName(DotName.createSimple(Plain.class.getName())).field("values").type());
+    }
+
+    private static int cachedSignatures(Indexer indexer) throws Exception {
+        Field parserField = Indexer.class.getDeclaredField("signatureParser");
+        parserField.setAccessible(true);
+        Object parser = parserField.get(indexer);
+        Field cacheField = parser.getClass().getDeclaredField("cache");
+        cacheField.setAccessible(true);
+        return ((Map<?, ?>) cacheField.get(parser)).size();
+    }
+
+    private static void verifyHolder(ClassInfo holder, Class<?> bound) {
+        Type field = holder.field("values").type();
+        assertEquals(DotName.createSimple(bound.getName()), variableBound(field));
+
+        MethodInfo method = holder.method("values", field);
+        assertEquals(DotName.createSimple(bound.getName()), variableBound(method.parameters().get(0)));
+        assertEquals(DotName.createSimple(bound.getName()), variableBound(method.returnType()));
+    }
+
+    private static DotName variableBound(Type listType) {
+        return listType.asParameterizedType().arguments().get(0).asTypeVariable().bounds().get(0).name();
+    }
+
+    private static void index(Indexer indexer, Class<?> clazz) throws IOException {
+        InputStream stream = GenericSignatureCacheTestCase.class.getClassLoader()
+                .getResourceAsStream(clazz.getName().replace('.', '/') + ".class");
+        try {
+            indexer.index(stream);
+        } finally {
+            stream.close();
+        }
+    }
+}
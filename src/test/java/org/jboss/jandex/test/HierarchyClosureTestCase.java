@@ -0,0 +1,129 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2021 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jboss.jandex.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.jboss.jandex.ClassInfo;
+import org.jboss.jandex.DotName;
+import org.jboss.jandex.Index;
+import org.jboss.jandex.ParallelIndexer;
+import org.junit.Test;
+
+public class HierarchyClosureTestCase {
+
+    interface Root {}
+    interface Left extends Root {}
+    interface Right extends Root {}
+    interface Both extends Left, Right {}
+    static class A implements Left {}
+    static class B extends A {}
+    static class C extends B implements Both {}
+    static class D extends A implements Right {}
+    static class E implements Right {}
+    static class F extends E {}
+    static class Unrelated {}
+
+    @Test
+    public void testSmallHierarchy() throws Exception {
+        Index index = Index.of(Root.class, Left.class, Right.class, Both.class, A.class, B.class, C.class, D.class,
+                E.class, F.class, Unrelated.class);
+        Index closure = index.withHierarchyClosure();
+        assertSame(closure, closure.withHierarchyClosure());
+
+        assertEquals(names(A.class, B.class, C.class, D.class, E.class, F.class),
+                names(closure.getAllKnownImplementors(name(Root.class))));
+        assertEquals(names(A.class, B.class, C.class, D.class),
+                names(closure.getAllKnownImplementors(name(Left.class))));
+        assertEquals(names(C.class), names(closure.getAllKnownImplementors(name(Both.class))));
+        assertEquals(names(B.class, C.class, D.class), names(closure.getAllKnownSubclasses(name(A.class))));
+        assertTrue(closure.getAllKnownSubclasses(name(Unrelated.class)).isEmpty());
+        assertTrue(closure.getAllKnownImplementors(DotName.createSimple("does.not.Exist")).isEmpty());
+
+        Set<ClassInfo> implementors = closure.getAllKnownImplementors(name(Right.class));
+        assertEquals(names(C.class, D.class, E.class, F.class), names(implementors));
+        assertTrue(implementors.contains(closure.getClassByName(name(F.class))));
+        assertFalse(implementors.contains(closure.getClassByName(name(Unrelated.class))));
+        assertFalse(implementors.contains(closure.getClassByName(name(Root.class))));
+        try {
+            implementors.clear();
+            fail("Expected an unmodifiable set");
+        } catch (UnsupportedOperationException expected) {
+        }
+    }
+
+    @Test
+    public void testMatchesHierarchyWalk() throws Exception {
+        File root = new File(Index.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+        ParallelIndexer indexer = new ParallelIndexer(1);
+        indexer.addDirectory(root);
+        indexer.addDirectory(new File(HierarchyClosureTestCase.class.getProtectionDomain().getCodeSource().getLocation().toURI()));
+        Index index = indexer.complete();
+        Index closure = index.withHierarchyClosure();
+
+        Set<DotName> names = new HashSet<DotName>();
+        for (ClassInfo clazz : index.getKnownClasses()) {
+            names.add(clazz.name());
+            if (clazz.superName() != null) {
+                names.add(clazz.superName());
+            }
+            names.addAll(clazz.interfaceNames());
+        }
+        for (DotName name : names) {
+            Collection<ClassInfo> subclasses = index.getAllKnownSubclasses(name);
+            assertEquals(name.toString(), new HashSet<ClassInfo>(subclasses), new HashSet<ClassInfo>(closure.getAllKnownSubclasses(name)));
+            assertEquals(subclasses.size(), closure.getAllKnownSubclasses(name).size());
+
+            Set<ClassInfo> implementors = index.getAllKnownImplementors(name);
+            assertEquals(name.toString(), implementors, closure.getAllKnownImplementors(name));
+            for (ClassInfo implementor : implementors) {
+                assertTrue(closure.getAllKnownImplementors(name).contains(implementor));
+            }
+        }
+    }
+
+    private static DotName name(Class<?> clazz) {
+        return DotName.createSimple(clazz.getName());
+    }
+
+    private static Set<DotName> names(Class<?>... classes) {
+        Set<DotName> names = new HashSet<DotName>();
+        for (Class<?> clazz : classes) {
+            names.add(name(clazz));
+        }
+        return names;
+    }
+
+    private static Set<DotName> names(Collection<ClassInfo> classes) {
+        Set<DotName> names = new HashSet<DotName>();
+        for (ClassInfo clazz : classes) {
+            names.add(clazz.name());
+        }
+        return names;
+    }
+}
@@ -0,0 +1,251 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2021 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jboss.jandex.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.jboss.jandex.AnnotationInstance;
+import org.jboss.jandex.ClassInfo;
+import org.jboss.jandex.DotName;
+import org.jboss.jandex.IncrementalIndexer;
+import org.jboss.jandex.Index;
+import org.jboss.jandex.IndexReader;
+import org.jboss.jandex.IndexWriter;
+import org.jboss.jandex.Indexer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class IncrementalIndexerTestCase {
+
+    private static final DotName TEST_ANNOTATION = DotName.createSimple(BasicTestCase.TestAnnotation.class.getName());
+
+    private File directory;
+
+    @Before
+    public void setUp() throws Exception {
+        directory = File.createTempFile("jandex", "");
+        directory.delete();
+        File root = new File(IncrementalIndexerTestCase.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+        File tests = new File(root, "org/jboss/jandex/test");
+        File target = new File(directory, "org/jboss/jandex/test");
+        target.mkdirs();
+        for (File file : tests.listFiles()) {
+            if (file.getName().startsWith("HierarchyClosureTestCase$") || file.getName().startsWith("BasicTestCase")) {
+                copy(file, new File(target, file.getName()));
+            }
+        }
+    }
+
+    @After
+    public void tearDown() {
+        delete(directory);
+    }
+
+    @Test
+    public void testUnchangedDirectory() throws Exception {
+        IncrementalIndexer indexer = new IncrementalIndexer(null);
+        Index first = roundTrip(indexer.indexDirectory(directory));
+        int classes = first.getKnownClasses().size();
+        assertEquals(classes, indexer.getIndexedCount());
+
+        indexer = new IncrementalIndexer(first);
+        Index second = indexer.indexDirectory(directory);
+        assertEquals(0, indexer.getIndexedCount());
+        assertEquals(0, indexer.getRemovedCount());
+        assertSameContent(first, second);
+    }
+
+    @Test
+    public void testChangedAndRemovedClasses() throws Exception {
+        File testDirectory = new File(directory, "org/jboss/jandex/test");
+        Index first = roundTrip(new IncrementalIndexer(null).indexDirectory(directory));
+
+        assertTrue(new File(testDirectory, "HierarchyClosureTestCase$F.class").delete());
+        File changed = new File(testDirectory, "BasicTestCase$DummyClass.class");
+        assertTrue(changed.setLastModified(changed.lastModified() - 10000));
+
+        IncrementalIndexer indexer = new IncrementalIndexer(first);
+        Index second = indexer.indexDirectory(directory);
+        assertEquals(1, indexer.getIndexedCount());
+        assertEquals(2, indexer.getRemovedCount());
+
+        DotName removed = DotName.createSimple(HierarchyClosureTestCase.class.getName() + "$F");
+        assertNull(second.getClassByName(removed));
+        assertEquals(first.getKnownClasses().size() - 1, second.getKnownClasses().size());
+        assertSameContent(indexAll(directory), second);
+
+        // The update is persisted along with its fingerprints
+        indexer = new IncrementalIndexer(roundTrip(second));
+        assertSameContent(second, indexer.indexDirectory(directory));
+        assertEquals(0, indexer.getIndexedCount());
+    }
+
+    @Test
+    public void testIndexWithoutFingerprints() throws Exception {
+        Index plain = indexAll(directory);
+        IncrementalIndexer indexer = new IncrementalIndexer(plain);
+        Index updated = indexer.indexDirectory(directory);
+        assertEquals(plain.getKnownClasses().size(), indexer.getIndexedCount());
+        assertEquals(plain.getKnownClasses().size(), indexer.getRemovedCount());
+        assertSameContent(plain, updated);
+    }
+
+    @Test
+    public void testUnindexableClassFiles() throws Exception {
+        Index expected = indexAll(directory);
+        File testDirectory = new File(directory, "org/jboss/jandex/test");
+        File broken = new File(testDirectory, "Broken.class");
+        write(broken, new byte[] {1, 2, 3, 4});
+        // a valid Java 1.0 class file header, which the indexer skips
+        write(new File(testDirectory, "Old.class"), new byte[] {(byte) 0xCA, (byte) 0xFE, (byte) 0xBA, (byte) 0xBE, 0, 0, 0, 45});
+
+        ByteArrayOutputStream err = new ByteArrayOutputStream();
+        IncrementalIndexer indexer = new IncrementalIndexer(null, false, new PrintStream(err, true));
+        Index first = roundTrip(indexer.indexDirectory(directory));
+        assertEquals(expected.getKnownClasses().size(), indexer.getIndexedCount());
+        assertSameContent(expected, first);
+        assertTrue(err.toString().startsWith("ERROR: Could not index org/jboss/jandex/test/Broken.class"));
+
+        // Skipped class files have no fingerprint, so they are tried again
+        err.reset();
+        indexer = new IncrementalIndexer(first, false, new PrintStream(err, true));
+        assertSameContent(expected, indexer.indexDirectory(directory));
+        assertEquals(0, indexer.getIndexedCount());
+        assertEquals(0, indexer.getRemovedCount());
+        assertTrue(err.toString().contains("Broken.class"));
+
+        try {
+            new IncrementalIndexer(null).indexDirectory(directory);
+            fail("Expected an IOException");
+        } catch (IOException expectedFailure) {
+            assertTrue(expectedFailure.getMessage().contains("Broken.class"));
+        }
+        assertTrue(broken.delete());
+        assertSameContent(expected, new IncrementalIndexer(null).indexDirectory(directory));
+    }
+
+    private static void write(File file, byte[] content) throws IOException {
+        OutputStream out = new FileOutputStream(file);
+        try {
+            out.write(content);
+        } finally {
+            out.close();
+        }
+    }
+
+    private static Index indexAll(File directory) throws IOException {
+        Indexer indexer = new Indexer();
+        indexAll(directory, indexer);
+        return indexer.complete();
+    }
+
+    private static void indexAll(File file, Indexer indexer) throws IOException {
+        if (file.isDirectory()) {
+            for (File child : file.listFiles()) {
+                indexAll(child, indexer);
+            }
+        } else {
+            InputStream in = new FileInputStream(file);
+            try {
+                indexer.index(in);
+            } finally {
+                in.close();
+            }
+        }
+    }
+
+    private static Index roundTrip(Index index) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new IndexWriter(out).write(index);
+        return new IndexReader(new ByteArrayInputStream(out.toByteArray())).read();
+    }
+
+    private static void assertSameContent(Index expected, Index actual) {
+        assertEquals(names(expected.getKnownClasses()), names(actual.getKnownClasses()));
+        for (ClassInfo clazz : expected.getKnownClasses()) {
+            DotName name = clazz.name();
+            assertEquals(names(expected.getKnownDirectSubclasses(name)), names(actual.getKnownDirectSubclasses(name)));
+            assertEquals(names(expected.getKnownDirectImplementors(name)), names(actual.getKnownDirectImplementors(name)));
+            assertEquals(names(expected.getKnownUsers(name)), names(actual.getKnownUsers(name)));
+            assertEquals(clazz.annotations().keySet(), actual.getClassByName(name).annotations().keySet());
+        }
+        assertEquals(targets(expected.getAnnotations(TEST_ANNOTATION)), targets(actual.getAnnotations(TEST_ANNOTATION)));
+    }
+
+    private static Set<DotName> names(Iterable<ClassInfo> classes) {
+        Set<DotName> names = new HashSet<DotName>();
+        for (ClassInfo clazz : classes) {
+            names.add(clazz.name());
+        }
+        return names;
+    }
+
+    private static Set<String> targets(List<AnnotationInstance> annotations) {
+        Set<String> targets = new HashSet<String>();
+        for (AnnotationInstance annotation : annotations) {
+            targets.add(annotation.target() + " " + annotation);
+        }
+        return targets;
+    }
+
+    private static void copy(File source, File target) throws IOException {
+        InputStream in = new FileInputStream(source);
+        try {
+            OutputStream out = new FileOutputStream(target);
+            try {
+                byte[] buffer = new byte[8192];
+                int read;
+                while ((read = in.read(buffer)) > 0) {
+                    out.write(buffer, 0, read);
+                }
+            } finally {
+                out.close();
+            }
+        } finally {
+            in.close();
+        }
+    }
+
+    private static void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+}
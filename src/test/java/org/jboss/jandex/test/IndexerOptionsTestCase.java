@@ -0,0 +1,236 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2021 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jboss.jandex.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.List;
+
+import org.jboss.jandex.AnnotationInstance;
+import org.jboss.jandex.ClassInfo;
+import org.jboss.jandex.DotName;
+import org.jboss.jandex.FieldInfo;
+import org.jboss.jandex.Index;
+import org.jboss.jandex.IndexReader;
+import org.jboss.jandex.IndexWriter;
+import org.jboss.jandex.Indexer;
+import org.jboss.jandex.IndexerOptions;
+import org.jboss.jandex.MethodInfo;
+import org.jboss.jandex.ParallelIndexer;
+import org.jboss.jandex.Type;
+import org.junit.Test;
+
+public class IndexerOptionsTestCase {
+
+    private static final DotName GENERIC = DotName.createSimple(Generic.class.getName());
+    private static final DotName API_CLASS = DotName.createSimple(BasicTestCase.ApiClass.class.getName());
+    private static final DotName TYPE_ANNOTATION = DotName.createSimple("test.TExample$B");
+
+    public static class Generic {
+        @BasicTestCase.FieldAnnotation
+        List<String> annotated;
+
+        List<String> plain;
+
+        @BasicTestCase.MethodAnnotation1
+        void annotated(List<String> strings, int count) {}
+
+        void parameter(@BasicTestCase.ParameterAnnotation int count) {}
+
+        void unannotated(int count) {}
+    }
+
+    @Test
+    public void testDefaultOptions() throws IOException {
+        Index index = buildIndex(new Indexer(new IndexerOptions()));
+
+        ClassInfo generic = index.getClassByName(GENERIC);
+        assertEquals(2, generic.fields().size());
+        assertEquals(4, generic.methods().size());
+        assertEquals(Type.Kind.PARAMETERIZED_TYPE, generic.field("annotated").type().kind());
+        for (MethodInfo method : generic.methods()) {
+            if (method.parameters().size() > 0) {
+                assertNotNull(method.parameterName(0));
+            }
+        }
+        assertFalse(index.getAnnotations(TYPE_ANNOTATION).isEmpty());
+        assertEquals(1, index.getKnownUsers(API_CLASS).size());
+    }
+
+    @Test
+    public void testAnnotationsOnly() throws IOException {
+        Index index = buildIndex(new Indexer(IndexerOptions.annotationsOnly()));
+        verifyAnnotationsOnly(index);
+
+        index = roundTrip(index);
+        verifyAnnotationsOnly(index);
+
+        // class level information is unaffected
+        ClassInfo dummy = index.getClassByName(DotName.createSimple(BasicTestCase.DummyClass.class.getName()));
+        assertEquals(1, dummy.fields().size());
+        assertEquals(1, dummy.methods().size());
+        assertEquals(3, dummy.methods().get(0).annotations().size());
+        assertEquals(1, dummy.interfaceNames().size());
+        assertEquals(1, dummy.classAnnotations().size());
+    }
+
+    @Test
+    public void testSingleOptions() throws IOException {
+        Index index = buildIndex(new Indexer(new IndexerOptions().setTypeAnnotations(false).setParameterNames(false)));
+
+        ClassInfo generic = index.getClassByName(GENERIC);
+        assertEquals(2, generic.fields().size());
+        assertEquals(4, generic.methods().size());
+        assertEquals(Type.Kind.PARAMETERIZED_TYPE, generic.field("annotated").type().kind());
+        for (MethodInfo method : generic.methods()) {
+            if (method.parameters().size() > 0) {
+                assertNull(method.parameterName(0));
+            }
+        }
+        assertTrue(index.getAnnotations(TYPE_ANNOTATION).isEmpty());
+        assertEquals(1, index.getKnownUsers(API_CLASS).size());
+    }
+
+    @Test
+    public void testSkipUnannotatedClasses() throws IOException {
+        DotName nestedC = DotName.createSimple(BasicTestCase.NestedC.class.getName());
+        DotName serializable = DotName.createSimple("java.io.Serializable");
+
+        Indexer indexer = new Indexer(new IndexerOptions().setSkipUnannotatedClasses(true));
+        indexClass(indexer, BasicTestCase.NestedC.class.getName());
+        indexClass(indexer, BasicTestCase.NestedA.class.getName());
+        indexClass(indexer, BasicTestCase.ApiUser.class.getName());
+        Index index = roundTrip(indexer.complete());
+
+        // the unannotated class is only part of the hierarchy
+        ClassInfo clazz = index.getClassByName(nestedC);
+        assertEquals(serializable, clazz.interfaceNames().get(0));
+        assertTrue(clazz.methods().isEmpty());
+        assertEquals(2, index.getKnownDirectImplementors(serializable).size());
+        assertEquals(1, index.getKnownUsers(API_CLASS).size());
+
+        ClassInfo annotated = index.getClassByName(DotName.createSimple(BasicTestCase.NestedA.class.getName()));
+        assertEquals(1, annotated.methods().size());
+        assertEquals(ClassInfo.NestingType.INNER, annotated.nestingType());
+    }
+
+    @Test
+    public void testAnnotationNames() throws IOException {
+        DotName fieldAnnotation = DotName.createSimple(BasicTestCase.FieldAnnotation.class.getName());
+        DotName parameterAnnotation = DotName.createSimple(BasicTestCase.ParameterAnnotation.class.getName());
+        DotName methodAnnotation = DotName.createSimple(BasicTestCase.MethodAnnotation1.class.getName());
+        DotName testAnnotation = DotName.createSimple(BasicTestCase.TestAnnotation.class.getName());
+
+        IndexerOptions options = new IndexerOptions()
+                .setAnnotationNames(Arrays.asList(fieldAnnotation, parameterAnnotation, TYPE_ANNOTATION));
+        Index index = roundTrip(buildIndex(new Indexer(options)));
+
+        assertEquals(2, index.getAnnotations(fieldAnnotation).size());
+        assertEquals(1, index.getAnnotations(parameterAnnotation).size());
+        assertFalse(index.getAnnotations(TYPE_ANNOTATION).isEmpty());
+        assertTrue(index.getAnnotations(methodAnnotation).isEmpty());
+        assertTrue(index.getAnnotations(testAnnotation).isEmpty());
+        assertTrue(index.getAnnotations(DotName.createSimple("test.TExample$A")).isEmpty());
+
+        ClassInfo dummy = index.getClassByName(DotName.createSimple(BasicTestCase.DummyClass.class.getName()));
+        assertEquals(1, dummy.annotations().size());
+        assertTrue(dummy.classAnnotations().isEmpty());
+        assertEquals(1, dummy.field("x").annotations().size());
+        for (MethodInfo method : dummy.methods()) {
+            assertTrue(method.annotations().isEmpty());
+        }
+
+        // a class which does not use any of the annotation types is unannotated
+        options.setSkipUnannotatedClasses(true);
+        index = buildIndex(new Indexer(options));
+        assertTrue(index.getClassByName(DotName.createSimple(BasicTestCase.ApiUser.class.getName())).methods().isEmpty());
+        assertEquals(1, index.getClassByName(DotName.createSimple(BasicTestCase.DummyClass.class.getName())).field("x").annotations().size());
+        assertEquals(2, index.getAnnotations(fieldAnnotation).size());
+    }
+
+    @Test
+    public void testParallelIndexer() throws Exception {
+        File root = new File(IndexerOptionsTestCase.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+        ParallelIndexer indexer = new ParallelIndexer(2, IndexerOptions.annotationsOnly());
+        indexer.addClass(new File(root, Generic.class.getName().replace('.', '/') + ".class"));
+        Index index = indexer.complete();
+
+        ClassInfo generic = index.getClassByName(GENERIC);
+        assertEquals(1, generic.fields().size());
+        assertEquals(2, generic.methods().size());
+    }
+
+    private static void verifyAnnotationsOnly(Index index) {
+        ClassInfo generic = index.getClassByName(GENERIC);
+
+        // only annotated members are kept, with their erased types
+        assertEquals(1, generic.fields().size());
+        assertNull(generic.field("plain"));
+        FieldInfo field = generic.field("annotated");
+        assertEquals(Type.Kind.CLASS, field.type().kind());
+        assertEquals(1, field.annotations().size());
+
+        assertEquals(2, generic.methods().size());
+        for (MethodInfo method : generic.methods()) {
+            assertFalse(method.annotations().isEmpty());
+            assertNull(method.parameterName(0));
+            assertEquals(Type.Kind.CLASS == method.parameters().get(0).kind() ? "annotated" : "parameter", method.name());
+        }
+
+        List<AnnotationInstance> parameterAnnotations = index.getAnnotations(DotName.createSimple(BasicTestCase.ParameterAnnotation.class.getName()));
+        assertEquals(1, parameterAnnotations.size());
+        assertEquals("parameter", parameterAnnotations.get(0).target().asMethodParameter().method().name());
+
+        assertTrue(index.getAnnotations(TYPE_ANNOTATION).isEmpty());
+        assertTrue(index.getKnownUsers(API_CLASS).isEmpty());
+    }
+
+    private static Index buildIndex(Indexer indexer) throws IOException {
+        indexClass(indexer, Generic.class.getName());
+        indexClass(indexer, BasicTestCase.ApiUser.class.getName());
+        indexClass(indexer, BasicTestCase.DummyClass.class.getName());
+        indexClass(indexer, "test.TExample");
+        return indexer.complete();
+    }
+
+    private static void indexClass(Indexer indexer, String className) throws IOException {
+        InputStream stream = IndexerOptionsTestCase.class.getClassLoader().getResourceAsStream(className.replace('.', '/') + ".class");
+        try {
+            indexer.index(stream);
+        } finally {
+            stream.close();
+        }
+    }
+
+    private static Index roundTrip(Index index) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new IndexWriter(out).write(index);
+        return new IndexReader(new ByteArrayInputStream(out.toByteArray())).read();
+    }
+}
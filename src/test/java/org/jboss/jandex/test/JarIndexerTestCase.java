@@ -0,0 +1,188 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2021 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jboss.jandex.test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.jar.JarOutputStream;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+
+import org.jboss.jandex.DotName;
+import org.jboss.jandex.Index;
+import org.jboss.jandex.IndexReader;
+import org.jboss.jandex.Indexer;
+import org.jboss.jandex.JarIndexer;
+import org.jboss.jandex.ParallelIndexer;
+import org.jboss.jandex.Result;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class JarIndexerTestCase {
+
+    private static final String INDEX = "META-INF/jandex.idx";
+
+    private File jarFile;
+
+    @Before
+    public void setUp() throws IOException {
+        jarFile = File.createTempFile("jandex", ".jar");
+        JarOutputStream out = new JarOutputStream(new FileOutputStream(jarFile));
+        try {
+            out.setComment("kept comment");
+            addEntry(out, "META-INF/MANIFEST.MF", "Manifest-Version: 1.0\r\n\r\n".getBytes("UTF-8"), false);
+            addEntry(out, INDEX, "stale".getBytes("UTF-8"), false);
+            addEntry(out, className(BasicTestCase.DummyClass.class), classBytes(BasicTestCase.DummyClass.class), false);
+            addEntry(out, "readme.txt", "stored content".getBytes("UTF-8"), true);
+            addEntry(out, className(BasicTestCase.NestedA.class), classBytes(BasicTestCase.NestedA.class), true);
+        } finally {
+            out.close();
+        }
+    }
+
+    @After
+    public void tearDown() {
+        jarFile.delete();
+    }
+
+    @Test
+    public void testModifyJar() throws IOException {
+        List<byte[]> contents = contentsWithoutIndex();
+
+        Result result = JarIndexer.createJarIndex(jarFile, new Indexer(), true, false, false, null, System.err);
+        verifyIndex(result.getIndex());
+        verifyJar(contents);
+    }
+
+    @Test
+    public void testModifyJarInParallel() throws IOException {
+        List<byte[]> contents = contentsWithoutIndex();
+
+        Result result = JarIndexer.createJarIndex(jarFile, new ParallelIndexer(2), null, true, false, false, null, System.err);
+        verifyIndex(result.getIndex());
+        verifyJar(contents);
+    }
+
+    @Test
+    public void testModifyJarTwice() throws IOException {
+        List<byte[]> contents = contentsWithoutIndex();
+
+        JarIndexer.createJarIndex(jarFile, new Indexer(), true, false, false, null, System.err);
+        JarIndexer.createJarIndex(jarFile, new Indexer(), true, false, false, null, System.err);
+        verifyJar(contents);
+    }
+
+    private void verifyJar(List<byte[]> expected) throws IOException {
+        JarFile jar = new JarFile(jarFile);
+        try {
+            assertEquals("kept comment", jar.getComment());
+            assertEquals(expected.size() + 1, jar.size());
+
+            List<String> names = new ArrayList<String>();
+            Enumeration<JarEntry> entries = jar.entries();
+            for (int i = 0; entries.hasMoreElements(); i++) {
+                JarEntry entry = entries.nextElement();
+                names.add(entry.getName());
+                if (!INDEX.equals(entry.getName())) {
+                    assertArrayEquals(expected.get(i), read(jar.getInputStream(entry)));
+                }
+            }
+            assertEquals(INDEX, names.get(names.size() - 1));
+
+            Index index = new IndexReader(jar.getInputStream(jar.getEntry(INDEX))).read();
+            verifyIndex(index);
+        } finally {
+            jar.close();
+        }
+    }
+
+    private static void verifyIndex(Index index) {
+        assertEquals(2, index.getKnownClasses().size());
+        assertNotNull(index.getClassByName(DotName.createSimple(BasicTestCase.DummyClass.class.getName())));
+        assertEquals(2, index.getAnnotations(DotName.createSimple(BasicTestCase.TestAnnotation.class.getName())).size());
+    }
+
+    private List<byte[]> contentsWithoutIndex() throws IOException {
+        List<byte[]> contents = new ArrayList<byte[]>();
+        JarFile jar = new JarFile(jarFile);
+        try {
+            Enumeration<JarEntry> entries = jar.entries();
+            while (entries.hasMoreElements()) {
+                JarEntry entry = entries.nextElement();
+                if (!INDEX.equals(entry.getName())) {
+                    contents.add(read(jar.getInputStream(entry)));
+                }
+            }
+        } finally {
+            jar.close();
+        }
+        assertTrue(contents.size() > 0);
+        return contents;
+    }
+
+    private static void addEntry(JarOutputStream out, String name, byte[] content, boolean stored) throws IOException {
+        ZipEntry entry = new ZipEntry(name);
+        if (stored) {
+            CRC32 crc = new CRC32();
+            crc.update(content);
+            entry.setMethod(ZipEntry.STORED);
+            entry.setSize(content.length);
+            entry.setCrc(crc.getValue());
+        }
+        out.putNextEntry(entry);
+        out.write(content);
+        out.closeEntry();
+    }
+
+    private static String className(Class<?> clazz) {
+        return clazz.getName().replace('.', '/') + ".class";
+    }
+
+    private static byte[] classBytes(Class<?> clazz) throws IOException {
+        return read(JarIndexerTestCase.class.getClassLoader().getResourceAsStream(className(clazz)));
+    }
+
+    private static byte[] read(InputStream in) throws IOException {
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buf = new byte[4096];
+            int n;
+            while ((n = in.read(buf)) > 0) {
+                out.write(buf, 0, n);
+            }
+            return out.toByteArray();
+        } finally {
+            in.close();
+        }
+    }
+}
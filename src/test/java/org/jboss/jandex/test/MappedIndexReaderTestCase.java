@@ -0,0 +1,177 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2021 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jboss.jandex.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.jboss.jandex.AnnotationInstance;
+import org.jboss.jandex.ClassInfo;
+import org.jboss.jandex.DotName;
+import org.jboss.jandex.Index;
+import org.jboss.jandex.IndexReader;
+import org.jboss.jandex.IndexView;
+import org.jboss.jandex.IndexWriter;
+import org.jboss.jandex.MappedIndexReader;
+import org.jboss.jandex.ParallelIndexer;
+import org.junit.Test;
+
+public class MappedIndexReaderTestCase {
+
+    private static final DotName TEST_ANNOTATION = DotName.createSimple(BasicTestCase.TestAnnotation.class.getName());
+
+    private static Index indexTestClasses() throws Exception {
+        File root = new File(MappedIndexReaderTestCase.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+        ParallelIndexer indexer = new ParallelIndexer(1);
+        indexer.addDirectory(new File(root, "org/jboss/jandex/test"));
+        return indexer.complete();
+    }
+
+    private static File write(Index index, int version) throws IOException {
+        File file = File.createTempFile("jandex", ".idx");
+        file.deleteOnExit();
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            new IndexWriter(out).write(index, version);
+        } finally {
+            out.close();
+        }
+        return file;
+    }
+
+    private static Index read(File file) throws IOException {
+        FileInputStream in = new FileInputStream(file);
+        try {
+            return new IndexReader(in).read();
+        } finally {
+            in.close();
+        }
+    }
+
+    @Test
+    public void testLazyLookups() throws Exception {
+        File file = write(indexTestClasses(), 11);
+        Index expected = read(file);
+        MappedIndexReader reader = new MappedIndexReader(file);
+        IndexView index = reader.read();
+        assertEquals(11, reader.getIndexVersion());
+
+        ClassInfo dummy = index.getClassByName(DotName.createSimple(BasicTestCase.DummyClass.class.getName()));
+        assertNotNull(dummy);
+        assertEquals(expected.getClassByName(dummy.name()).methods().size(), dummy.methods().size());
+        assertEquals(expected.getClassByName(dummy.name()).annotations().keySet(), dummy.annotations().keySet());
+        assertNull(index.getClassByName(DotName.createSimple("does.not.Exist")));
+
+        Collection<AnnotationInstance> instances = index.getAnnotations(TEST_ANNOTATION);
+        assertTrue(instances.size() > 0);
+        assertEquals(targets(expected.getAnnotations(TEST_ANNOTATION)), targets(instances));
+        for (AnnotationInstance instance : instances) {
+            assertNotNull(instance.target());
+        }
+        assertTrue(index.getAnnotations(DotName.createSimple("does.not.Exist")).isEmpty());
+
+        assertEquals(names(expected.getKnownUsers(dummy.name())), names(index.getKnownUsers(dummy.name())));
+    }
+
+    @Test
+    public void testAnnotationOrderMatchesSequentialRead() throws Exception {
+        File file = write(indexTestClasses(), 11);
+        Index expected = read(file);
+        IndexView index = new MappedIndexReader(file).read();
+
+        // Held by many classes, whose class entries are not written in name order
+        DotName test = DotName.createSimple(Test.class.getName());
+        List<String> before = targets(index.getAnnotations(test));
+        assertEquals(targets(expected.getAnnotations(test)), before);
+
+        index.getKnownClasses();
+        assertEquals(before, targets(index.getAnnotations(test)));
+    }
+
+    @Test
+    public void testFullMaterialization() throws Exception {
+        File file = write(indexTestClasses(), 11);
+        Index expected = read(file);
+        IndexView index = new MappedIndexReader(file).read();
+
+        DotName object = DotName.createSimple("java.lang.Object");
+        assertEquals(names(expected.getAllKnownSubclasses(object)), names(index.getAllKnownSubclasses(object)));
+        assertEquals(expected.getKnownClasses().size(), index.getKnownClasses().size());
+        for (ClassInfo clazz : expected.getKnownClasses()) {
+            assertEquals(targets(expected.getAnnotations(clazz.name())), targets(index.getAnnotations(clazz.name())));
+            assertEquals(names(expected.getKnownDirectImplementors(clazz.name())), names(index.getKnownDirectImplementors(clazz.name())));
+        }
+        assertEquals(targets(expected.getAnnotations(TEST_ANNOTATION)), targets(index.getAnnotations(TEST_ANNOTATION)));
+    }
+
+    @Test
+    public void testDirectoryLookupOfEveryClass() throws Exception {
+        File file = write(indexTestClasses(), 11);
+        Index expected = read(file);
+        IndexView index = new MappedIndexReader(file).read();
+
+        for (ClassInfo clazz : expected.getKnownClasses()) {
+            // Look up using a simple name, to check the directory does not depend on name identity
+            ClassInfo found = index.getClassByName(DotName.createSimple(clazz.name().toString()));
+            assertNotNull(clazz.name().toString(), found);
+            assertEquals(clazz.name(), found.name());
+            assertEquals(clazz.flags(), found.flags());
+        }
+        assertNull(index.getClassByName(DotName.createSimple("a")));
+        assertNull(index.getClassByName(DotName.createSimple("zzz.Last")));
+    }
+
+    @Test
+    public void testOlderVersion() throws Exception {
+        File file = write(indexTestClasses(), 10);
+        MappedIndexReader reader = new MappedIndexReader(file);
+        IndexView index = reader.read();
+        assertEquals(10, reader.getIndexVersion());
+        assertTrue(index instanceof Index);
+        assertEquals(read(file).getKnownClasses().size(), index.getKnownClasses().size());
+    }
+
+    private static Set<DotName> names(Collection<ClassInfo> classes) {
+        Set<DotName> names = new HashSet<DotName>();
+        for (ClassInfo clazz : classes) {
+            names.add(clazz.name());
+        }
+        return names;
+    }
+
+    private static List<String> targets(Collection<AnnotationInstance> annotations) {
+        List<String> targets = new ArrayList<String>();
+        for (AnnotationInstance annotation : annotations) {
+            targets.add(annotation.target() + " " + annotation);
+        }
+        return targets;
+    }
+}
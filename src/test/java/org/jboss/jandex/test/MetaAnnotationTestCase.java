@@ -0,0 +1,138 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2021 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jboss.jandex.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.jboss.jandex.AnnotationInstance;
+import org.jboss.jandex.CompositeIndex;
+import org.jboss.jandex.DotName;
+import org.jboss.jandex.Index;
+import org.jboss.jandex.IndexView;
+import org.jboss.jandex.test.util.MappedIndexes;
+import org.junit.Test;
+
+public class MetaAnnotationTestCase {
+
+    private static final DotName STEREOTYPE = DotName.createSimple(Stereotype.class.getName());
+    private static final DotName SERVICE = DotName.createSimple(Service.class.getName());
+    private static final DotName REST_SERVICE = DotName.createSimple(RestService.class.getName());
+    private static final DotName LOOP = DotName.createSimple(Loop.class.getName());
+    private static final DotName OTHER_LOOP = DotName.createSimple(OtherLoop.class.getName());
+    private static final DotName RETENTION = DotName.createSimple(Retention.class.getName());
+
+    @Retention(RetentionPolicy.RUNTIME)
+    public @interface Stereotype {
+    }
+
+    @Stereotype
+    @Retention(RetentionPolicy.RUNTIME)
+    public @interface Service {
+    }
+
+    @Service
+    @Retention(RetentionPolicy.RUNTIME)
+    public @interface RestService {
+    }
+
+    @OtherLoop
+    @Retention(RetentionPolicy.RUNTIME)
+    public @interface Loop {
+    }
+
+    @Loop
+    @Retention(RetentionPolicy.RUNTIME)
+    public @interface OtherLoop {
+    }
+
+    @Service
+    static class Plain {
+    }
+
+    @RestService
+    static class Rest {
+        @Service
+        void method() {
+        }
+    }
+
+    @Loop
+    static class Looping {
+    }
+
+    private static final Class<?>[] ANNOTATIONS = {Stereotype.class, Service.class, RestService.class, Loop.class, OtherLoop.class};
+    private static final Class<?>[] USERS = {Plain.class, Rest.class, Looping.class};
+
+    @Test
+    public void testIndex() throws IOException {
+        verify(Index.of(concat(ANNOTATIONS, USERS)));
+    }
+
+    @Test
+    public void testCompositeIndex() throws IOException {
+        // the stereotype chain spans both indexes
+        verify(CompositeIndex.create(Index.of(Stereotype.class, Service.class, Loop.class, Plain.class),
+                Index.of(RestService.class, OtherLoop.class, Rest.class, Looping.class)));
+    }
+
+    @Test
+    public void testLazyIndex() throws IOException {
+        verify(MappedIndexes.read(Index.of(concat(ANNOTATIONS, USERS))));
+    }
+
+    private static void verify(IndexView index) {
+        assertEquals(set(STEREOTYPE, RETENTION), index.getMetaAnnotations(SERVICE));
+        assertEquals(set(SERVICE, STEREOTYPE, RETENTION), index.getMetaAnnotations(REST_SERVICE));
+        assertEquals(set(RETENTION), index.getMetaAnnotations(STEREOTYPE));
+        assertEquals(set(LOOP, OTHER_LOOP, RETENTION), index.getMetaAnnotations(LOOP));
+        assertTrue(index.getMetaAnnotations(DotName.createSimple("org.example.Unknown")).isEmpty());
+
+        // @Service on Plain, on Rest.method() and on @RestService, and @RestService on Rest
+        Collection<AnnotationInstance> stereotyped = index.getAnnotationsWithMetaAnnotation(STEREOTYPE);
+        assertEquals(4, stereotyped.size());
+        Set<DotName> names = new HashSet<DotName>();
+        for (AnnotationInstance instance : stereotyped) {
+            names.add(instance.name());
+        }
+        assertEquals(set(SERVICE, REST_SERVICE), names);
+
+        assertEquals(1, index.getAnnotationsWithMetaAnnotation(SERVICE).size());
+        assertEquals(0, index.getAnnotationsWithMetaAnnotation(REST_SERVICE).size());
+        assertEquals(3, index.getAnnotationsWithMetaAnnotation(LOOP).size());
+    }
+
+    private static Set<DotName> set(DotName... names) {
+        return new HashSet<DotName>(Arrays.asList(names));
+    }
+
+    private static Class<?>[] concat(Class<?>[] first, Class<?>[] second) {
+        Class<?>[] result = Arrays.copyOf(first, first.length + second.length);
+        System.arraycopy(second, 0, result, first.length, second.length);
+        return result;
+    }
+}
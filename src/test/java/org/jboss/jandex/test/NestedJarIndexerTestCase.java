@@ -0,0 +1,141 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2021 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jboss.jandex.test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.jboss.jandex.DotName;
+import org.jboss.jandex.Index;
+import org.jboss.jandex.IndexerOptions;
+import org.jboss.jandex.NestedJarIndexer;
+import org.junit.Test;
+
+public class NestedJarIndexerTestCase {
+
+    @Test
+    public void testCombinedIndex() throws IOException {
+        Index index = new NestedJarIndexer().indexArchive(new ByteArrayInputStream(createEar()));
+
+        assertEquals(3, index.getKnownClasses().size());
+        assertNotNull(index.getClassByName(name(BasicTestCase.DummyClass.class)));
+        assertNotNull(index.getClassByName(name(BasicTestCase.NestedA.class)));
+        assertNotNull(index.getClassByName(name(BasicTestCase.NestedB.class)));
+        assertEquals(3, index.getAnnotations(name(BasicTestCase.TestAnnotation.class)).size());
+    }
+
+    @Test
+    public void testIndexPerArchive() throws IOException {
+        Map<String, Index> indexes = new NestedJarIndexer().indexArchives(new ByteArrayInputStream(createEar()), "app.ear");
+
+        assertArrayEquals(new String[] {"app.ear", "app.ear!/web.war", "app.ear!/web.war!/WEB-INF/lib/util.jar"},
+                indexes.keySet().toArray(new String[0]));
+
+        assertEquals(1, indexes.get("app.ear").getKnownClasses().size());
+        assertNotNull(indexes.get("app.ear").getClassByName(name(BasicTestCase.NestedB.class)));
+
+        Index war = indexes.get("app.ear!/web.war");
+        assertEquals(1, war.getKnownClasses().size());
+        assertNotNull(war.getClassByName(name(BasicTestCase.DummyClass.class)));
+
+        Index jar = indexes.get("app.ear!/web.war!/WEB-INF/lib/util.jar");
+        assertEquals(1, jar.getKnownClasses().size());
+        assertNotNull(jar.getClassByName(name(BasicTestCase.NestedA.class)));
+    }
+
+    @Test
+    public void testReportsCorruptClasses() throws IOException {
+        byte[] jar = archive(new String[] {"Broken.class", className(BasicTestCase.NestedA.class)},
+                new byte[][] {new byte[] {1, 2, 3, 4}, classBytes(BasicTestCase.NestedA.class)});
+        byte[] ear = archive(new String[] {className(BasicTestCase.NestedB.class), "lib/util.jar"},
+                new byte[][] {classBytes(BasicTestCase.NestedB.class), jar});
+
+        try {
+            new NestedJarIndexer().indexArchive(new ByteArrayInputStream(ear));
+            fail("Expected an IOException");
+        } catch (IOException expected) {
+            assertTrue(expected.getMessage().contains("lib/util.jar!/Broken.class"));
+        }
+
+        ByteArrayOutputStream info = new ByteArrayOutputStream();
+        ByteArrayOutputStream err = new ByteArrayOutputStream();
+        Index index = new NestedJarIndexer(new IndexerOptions(), true, new PrintStream(info, true), new PrintStream(err, true))
+                .indexArchive(new ByteArrayInputStream(ear));
+        assertEquals(2, index.getKnownClasses().size());
+        assertNotNull(index.getClassByName(name(BasicTestCase.NestedA.class)));
+        assertTrue(err.toString().startsWith("ERROR: Could not index lib/util.jar!/Broken.class"));
+        assertTrue(info.toString().contains("Indexed " + BasicTestCase.NestedA.class.getName()));
+    }
+
+    private static byte[] createEar() throws IOException {
+        byte[] jar = archive(new String[] {className(BasicTestCase.NestedA.class)},
+                new byte[][] {classBytes(BasicTestCase.NestedA.class)});
+        byte[] war = archive(new String[] {"WEB-INF/classes/" + className(BasicTestCase.DummyClass.class), "WEB-INF/lib/util.jar"},
+                new byte[][] {classBytes(BasicTestCase.DummyClass.class), jar});
+        return archive(new String[] {"META-INF/application.xml", className(BasicTestCase.NestedB.class), "web.war"},
+                new byte[][] {"<application/>".getBytes("UTF-8"), classBytes(BasicTestCase.NestedB.class), war});
+    }
+
+    private static byte[] archive(String[] names, byte[][] contents) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ZipOutputStream out = new ZipOutputStream(bytes);
+        for (int i = 0; i < names.length; i++) {
+            out.putNextEntry(new ZipEntry(names[i]));
+            out.write(contents[i]);
+            out.closeEntry();
+        }
+        out.close();
+        return bytes.toByteArray();
+    }
+
+    private static DotName name(Class<?> clazz) {
+        return DotName.createSimple(clazz.getName());
+    }
+
+    private static String className(Class<?> clazz) {
+        return clazz.getName().replace('.', '/') + ".class";
+    }
+
+    private static byte[] classBytes(Class<?> clazz) throws IOException {
+        InputStream in = NestedJarIndexerTestCase.class.getClassLoader().getResourceAsStream(className(clazz));
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buf = new byte[4096];
+            int n;
+            while ((n = in.read(buf)) > 0) {
+                out.write(buf, 0, n);
+            }
+            return out.toByteArray();
+        } finally {
+            in.close();
+        }
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2021 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jboss.jandex.test;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.jboss.jandex.ClassInfo;
+import org.jboss.jandex.CompositeIndex;
+import org.jboss.jandex.DotName;
+import org.jboss.jandex.Index;
+import org.jboss.jandex.IndexView;
+import org.jboss.jandex.test.util.MappedIndexes;
+import org.junit.Test;
+
+public class PackageQueryTestCase {
+
+    public static class Outer {
+        public static class Inner {
+        }
+    }
+
+    @Test
+    public void testIndex() throws IOException {
+        verify(Index.of(Outer.class, Outer.Inner.class, DotName.class, Index.class));
+    }
+
+    @Test
+    public void testCompositeIndex() throws IOException {
+        verify(CompositeIndex.create(Index.of(Outer.class, Outer.Inner.class), Index.of(DotName.class, Index.class)));
+    }
+
+    @Test
+    public void testLazyIndex() throws IOException {
+        verify(MappedIndexes.read(Index.of(Outer.class, Outer.Inner.class, DotName.class, Index.class)));
+    }
+
+    private static void verify(IndexView index) {
+        Set<String> test = names(Outer.class, Outer.Inner.class);
+        Set<String> main = names(DotName.class, Index.class);
+        Set<String> all = new HashSet<String>(test);
+        all.addAll(main);
+
+        assertEquals(test, names(index.getClassesInPackage(DotName.createSimple("org.jboss.jandex.test"), false)));
+        assertEquals(test, names(index.getClassesInPackage(DotName.createSimple("org.jboss.jandex.test"), true)));
+        assertEquals(main, names(index.getClassesInPackage(DotName.createSimple("org.jboss.jandex"), false)));
+        assertEquals(all, names(index.getClassesInPackage(DotName.createSimple("org.jboss.jandex"), true)));
+        assertEquals(all, names(index.getClassesInPackage(DotName.createSimple("org"), true)));
+        assertEquals(0, index.getClassesInPackage(DotName.createSimple("org.jboss"), false).size());
+        assertEquals(0, index.getClassesInPackage(DotName.createSimple("org.example"), true).size());
+
+        DotName componentized = DotName.createComponentized(DotName.createComponentized(
+                DotName.createComponentized(null, "org"), "jboss"), "jandex");
+        assertEquals(main, names(index.getClassesInPackage(componentized, false)));
+        assertEquals(all, names(index.getClassesInPackage(componentized, true)));
+    }
+
+    private static Set<String> names(Class<?>... classes) {
+        Set<String> names = new HashSet<String>();
+        for (Class<?> clazz : classes) {
+            names.add(clazz.getName());
+        }
+        return names;
+    }
+
+    private static Set<String> names(Collection<ClassInfo> classes) {
+        Set<String> names = new HashSet<String>();
+        for (ClassInfo clazz : classes) {
+            names.add(clazz.name().toString());
+        }
+        assertEquals(classes.size(), names.size());
+        return names;
+    }
+}
@@ -0,0 +1,263 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2021 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jboss.jandex.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.jboss.jandex.AnnotationInstance;
+import org.jboss.jandex.ClassInfo;
+import org.jboss.jandex.DotName;
+import org.jboss.jandex.Index;
+import org.jboss.jandex.Indexer;
+import org.jboss.jandex.ParallelIndexer;
+import org.junit.Test;
+
+public class ParallelIndexerTestCase {
+
+    private static File classesDirectory() throws Exception {
+        File root = new File(Index.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+        return new File(root, "org/jboss/jandex");
+    }
+
+    @Test
+    public void testMatchesSequentialIndex() throws Exception {
+        File directory = classesDirectory();
+
+        List<File> files = new ArrayList<File>();
+        collect(directory, files);
+        Index sequential = sequentialIndex(files);
+
+        ParallelIndexer parallelIndexer = new ParallelIndexer(4);
+        parallelIndexer.addDirectory(directory);
+        Index parallel = parallelIndexer.complete();
+
+        assertSameIndex(sequential, parallel);
+    }
+
+    @Test
+    public void testJarMatchesSequentialIndex() throws Exception {
+        File directory = classesDirectory();
+        List<File> files = new ArrayList<File>();
+        collect(directory, files);
+        Index sequential = sequentialIndex(files);
+
+        File jar = File.createTempFile("parallel", ".jar");
+        try {
+            ZipOutputStream out = new ZipOutputStream(new FileOutputStream(jar));
+            try {
+                for (File file : files) {
+                    out.putNextEntry(new ZipEntry(file.getPath().substring(directory.getPath().length() + 1)));
+                    InputStream stream = new FileInputStream(file);
+                    try {
+                        byte[] buf = new byte[4096];
+                        int n;
+                        while ((n = stream.read(buf)) > 0) {
+                            out.write(buf, 0, n);
+                        }
+                    } finally {
+                        stream.close();
+                    }
+                    out.closeEntry();
+                }
+            } finally {
+                out.close();
+            }
+
+            ParallelIndexer parallelIndexer = new ParallelIndexer(4);
+            parallelIndexer.addJar(jar);
+            assertSameIndex(sequential, parallelIndexer.complete());
+        } finally {
+            jar.delete();
+        }
+    }
+
+    @Test
+    public void testWorkersShareNames() throws Exception {
+        ParallelIndexer parallelIndexer = new ParallelIndexer(4);
+        parallelIndexer.addDirectory(classesDirectory());
+        Index parallel = parallelIndexer.complete();
+
+        // the same name resolves to the same instance, whichever worker indexed the class
+        Map<DotName, DotName> instances = new HashMap<DotName, DotName>();
+        for (ClassInfo clazz : parallel.getKnownClasses()) {
+            assertSameInstance(instances, clazz.superName());
+            assertSameInstance(instances, clazz.name().prefix());
+        }
+        assertTrue(instances.size() > 1);
+    }
+
+    private static void assertSameInstance(Map<DotName, DotName> instances, DotName name) {
+        if (name != null) {
+            DotName previous = instances.put(name, name);
+            assertTrue(previous == null || previous == name);
+        }
+    }
+
+    private static Index sequentialIndex(List<File> files) throws IOException {
+        Indexer indexer = new Indexer();
+        for (File file : files) {
+            InputStream stream = new FileInputStream(file);
+            try {
+                indexer.index(stream);
+            } finally {
+                stream.close();
+            }
+        }
+        return indexer.complete();
+    }
+
+    private static void assertSameIndex(Index sequential, Index parallel) {
+        assertTrue(sequential.getKnownClasses().size() > 100);
+        assertEquals(sequential.getKnownClasses().size(), parallel.getKnownClasses().size());
+        for (ClassInfo clazz : sequential.getKnownClasses()) {
+            DotName name = clazz.name();
+            assertEquals(name, parallel.getClassByName(name).name());
+            assertEquals(names(sequential.getKnownDirectSubclasses(name)), names(parallel.getKnownDirectSubclasses(name)));
+            assertEquals(names(sequential.getKnownDirectImplementors(name)), names(parallel.getKnownDirectImplementors(name)));
+            assertEquals(names(sequential.getKnownUsers(name)), names(parallel.getKnownUsers(name)));
+            assertEquals(targets(sequential.getAnnotations(name)), targets(parallel.getAnnotations(name)));
+        }
+
+        DotName deprecated = DotName.createSimple(Deprecated.class.getName());
+        assertEquals(targets(sequential.getAnnotations(deprecated)), targets(parallel.getAnnotations(deprecated)));
+        assertEquals(names(sequential.getKnownDirectSubclasses(DotName.createSimple("java.lang.Object"))),
+                names(parallel.getKnownDirectSubclasses(DotName.createSimple("java.lang.Object"))));
+    }
+
+    @Test
+    public void testReportsFirstFailure() throws Exception {
+        File broken = File.createTempFile("Broken", ".class");
+        try {
+            FileOutputStream out = new FileOutputStream(broken);
+            try {
+                out.write(new byte[] {1, 2, 3, 4});
+            } finally {
+                out.close();
+            }
+
+            ParallelIndexer indexer = new ParallelIndexer(2);
+            indexer.addDirectory(classesDirectory());
+            indexer.addClass(broken);
+            try {
+                indexer.complete();
+                fail("Expected an IOException");
+            } catch (IOException expected) {
+                assertTrue(expected.getMessage().contains(broken.getName()));
+            }
+        } finally {
+            broken.delete();
+        }
+    }
+
+    @Test
+    public void testReportsFailuresAndContinues() throws Exception {
+        File broken = File.createTempFile("Broken", ".class");
+        try {
+            FileOutputStream out = new FileOutputStream(broken);
+            try {
+                out.write(new byte[] {1, 2, 3, 4});
+            } finally {
+                out.close();
+            }
+
+            List<File> files = new ArrayList<File>();
+            collect(classesDirectory(), files);
+            ParallelIndexer indexer = new ParallelIndexer(4);
+            for (File file : files.subList(0, files.size() / 2)) {
+                indexer.addClass(file);
+            }
+            indexer.addClass(broken);
+            for (File file : files.subList(files.size() / 2, files.size())) {
+                indexer.addClass(file);
+            }
+
+            ByteArrayOutputStream info = new ByteArrayOutputStream();
+            ByteArrayOutputStream err = new ByteArrayOutputStream();
+            Index index = indexer.complete(true, new PrintStream(info, true), new PrintStream(err, true));
+            assertSameIndex(sequentialIndex(files), index);
+            assertTrue(err.toString().startsWith("ERROR: Could not index " + broken.getPath()));
+
+            // classes are listed in the order their class files were added
+            List<String> expected = new ArrayList<String>();
+            for (ClassInfo clazz : orderedClasses(files)) {
+                expected.add("Indexed " + clazz.name() + " (" + clazz.annotations().size() + " annotations)");
+            }
+            assertEquals(expected, Arrays.asList(info.toString().split(System.getProperty("line.separator"))));
+        } finally {
+            broken.delete();
+        }
+    }
+
+    private static List<ClassInfo> orderedClasses(List<File> files) throws IOException {
+        List<ClassInfo> classes = new ArrayList<ClassInfo>();
+        Indexer indexer = new Indexer();
+        for (File file : files) {
+            InputStream stream = new FileInputStream(file);
+            try {
+                classes.add(indexer.index(stream));
+            } finally {
+                stream.close();
+            }
+        }
+        return classes;
+    }
+
+    private static void collect(File directory, List<File> files) {
+        for (File child : directory.listFiles()) {
+            if (child.isDirectory()) {
+                collect(child, files);
+            } else if (child.getName().endsWith(".class")) {
+                files.add(child);
+            }
+        }
+    }
+
+    private static List<DotName> names(Iterable<ClassInfo> classes) {
+        List<DotName> names = new ArrayList<DotName>();
+        for (ClassInfo clazz : classes) {
+            names.add(clazz.name());
+        }
+        return names;
+    }
+
+    private static List<String> targets(List<AnnotationInstance> annotations) {
+        List<String> targets = new ArrayList<String>();
+        for (AnnotationInstance annotation : annotations) {
+            targets.add(annotation.target() + " " + annotation);
+        }
+        return targets;
+    }
+}
@@ -1,6 +1,7 @@
 package org.jboss.jandex.test;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
@@ -19,6 +20,7 @@ import org.junit.Test;
 import net.bytebuddy.ByteBuddy;
 import net.bytebuddy.ClassFileVersion;
 import net.bytebuddy.NamingStrategy;
+import net.bytebuddy.dynamic.DynamicType;
 import net.bytebuddy.description.annotation.AnnotationDescription;
 import net.bytebuddy.description.type.TypeDescription;
 
@@ -72,6 +74,35 @@ public class Utf8ConstantEncodingTest {
         verifyAnnotationValue(index2);
     }
 
+    @Test
+    public void testClassNames() throws IOException {
+        // enough distinct names to grow the name tables of the indexer several times
+        String[] names = new String[200];
+        Indexer indexer = new Indexer();
+        TypeDescription superClass = TypeDescription.OBJECT;
+        for (int i = 0; i < names.length; i++) {
+            names[i] = "org.jboss.jandex.test.Kl\u00e4sse" + i + (i % 2 == 0 ? "" : "$\u0416\u0000");
+            DynamicType.Unloaded<?> type = new ByteBuddy()
+                    .with(ClassFileVersion.JAVA_V8)
+                    .subclass(superClass)
+                    .name(names[i])
+                    .make();
+            indexer.index(new ByteArrayInputStream(type.getBytes()));
+            superClass = type.getTypeDescription();
+        }
+        Index index = indexer.complete();
+
+        ClassInfo previous = null;
+        for (String name : names) {
+            ClassInfo clazz = index.getClassByName(DotName.createSimple(name));
+            assertEquals(name, clazz.name().toString());
+            if (previous != null) {
+                assertSame(previous.name(), clazz.superName());
+            }
+            previous = clazz;
+        }
+    }
+
     private void verifyAnnotationValue(Index index) {
         ClassInfo clazz = index.getClassByName(DotName.createSimple(CLASS_NAME));
         String annotationValue = clazz.classAnnotation(DotName.createSimple(MyAnnotation.class.getName())).value().asString();
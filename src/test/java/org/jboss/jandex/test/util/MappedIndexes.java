@@ -0,0 +1,50 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2021 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.jandex.test.util;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import org.jboss.jandex.Index;
+import org.jboss.jandex.IndexView;
+import org.jboss.jandex.IndexWriter;
+import org.jboss.jandex.MappedIndexReader;
+
+/**
+ * Writes an index to a temporary file and opens it with {@link MappedIndexReader}, so that tests of
+ * {@link IndexView} queries can run against the lazily decoded index as well.
+ */
+public final class MappedIndexes {
+
+    private MappedIndexes() {
+    }
+
+    public static IndexView read(Index index) throws IOException {
+        File file = File.createTempFile("jandex", ".idx");
+        // the returned index reads the file on demand
+        file.deleteOnExit();
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            new IndexWriter(out).write(index);
+        } finally {
+            out.close();
+        }
+        return new MappedIndexReader(file).read();
+    }
+}